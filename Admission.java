@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+// ด่านรับคนเข้า: connection ใหม่ (TCP หรือ loopback) ต่อคิว (จำกัดความยาว) แล้ว worker จำนวนคงที่หยิบไปทำ handshake ทีละคน
+// ตอนคนแห่เข้ามาพร้อมกันเป็นร้อย (ห้องจบพร้อมกัน / streamer พาคนดูมา) ไม่เกิด thread ต่อคนระหว่าง handshake
+// worker เป็น priority ต่ำ simulation thread ของห้องที่เล่นอยู่จึงไม่ถูกแย่ง CPU
+// คนที่รออยู่ได้ QUEUE:<ลำดับ>:<จำนวนที่รอ> ทุกวินาที (กัน client timeout และให้รู้ว่ายังไม่หลุด)
+final class Admission {
+    // handshake จริงของ Server: อ่านบรรทัดแรก ตรวจ แล้วลงทะเบียน (รันบน worker) คืน true ถ้าได้เข้า
+    interface Handshake {
+        boolean run(Transport transport) throws IOException;
+    }
+
+    private static final class Pending {
+        final Transport channel;
+        final long acceptedAt;
+        boolean admitted;   // guarded by this: worker รับไปแล้ว ห้ามเขียน QUEUE ทับ protocol จริง
+        boolean finished;   // guarded by this: handshake เสร็จแล้ว ไม่ต้องตัดเพราะ timeout
+
+        Pending(Transport channel, long acceptedAt) {
+            this.channel = channel;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+
+    private final BlockingQueue<Pending> waiting;
+    private final long waitTimeoutMs, handshakeTimeoutMs;
+    private final Handshake handshake;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "AdmissionTimer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    Admission(int workers, int maxWaiting, long waitTimeoutMs, long handshakeTimeoutMs, Handshake handshake) {
+        this.waiting = new ArrayBlockingQueue<>(maxWaiting);
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.handshakeTimeoutMs = handshakeTimeoutMs;
+        this.handshake = handshake;
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::work, "Admission-" + i);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.setDaemon(true);
+            t.start();
+        }
+        timer.scheduleAtFixedRate(this::announcePositions, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // acceptor thread: คิวเต็มตอบ SERVER_BUSY แล้วปิดเลย ไม่ให้ค้างกิน socket
+    void offer(Transport channel) {
+        if (!waiting.offer(new Pending(channel, System.currentTimeMillis()))) {
+            ServerMetrics.admissionRejected.increment();
+            reject(channel, "ERROR:SERVER_BUSY");
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Pending p;
+            try {
+                p = waiting.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (p) {
+                p.admitted = true;
+            }
+            if (System.currentTimeMillis() - p.acceptedAt > waitTimeoutMs) {
+                ServerMetrics.admissionRejected.increment();
+                reject(p.channel, "ERROR:SERVER_BUSY");
+                continue;
+            }
+            // client ที่ส่งบรรทัดแรกช้า/ไม่ส่งเลย ถูกตัดเพื่อคืน worker (ปิด channel -> read โยน exception)
+            ScheduledFuture<?> guard = timer.schedule(() -> {
+                synchronized (p) {
+                    if (p.finished) return;
+                    ServerMetrics.handshakeTimeouts.increment();
+                    close(p.channel);
+                }
+            }, handshakeTimeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                if (handshake.run(p.channel)) ServerMetrics.admitted.increment();
+            } catch (IOException | RuntimeException e) {
+                close(p.channel);
+            } finally {
+                synchronized (p) {
+                    p.finished = true;
+                }
+                guard.cancel(false);
+            }
+        }
+    }
+
+    private void announcePositions() {
+        int total = waiting.size();
+        ServerMetrics.admissionWaiting = total;
+        if (total == 0) return;
+        int position = 0;
+        for (Pending p : waiting) {
+            position++;
+            synchronized (p) {
+                if (p.admitted) continue;
+                try {
+                    p.channel.write(ByteBuffer.wrap(("QUEUE:" + position + ":" + total + "\n").getBytes(StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    close(p.channel); // worker จะเจอ channel ปิดแล้วตอนอ่าน
+                }
+            }
+        }
+    }
+
+    private static void reject(Transport channel, String reason) {
+        try {
+            channel.write(ByteBuffer.wrap((reason + "\n").getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException ignored) {}
+        close(channel);
+    }
+
+    private static void close(Transport channel) {
+        channel.close();
+    }
+}
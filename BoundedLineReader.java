@@ -0,0 +1,52 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+// อ่านข้อความจาก client ทีละบรรทัดแบบจำกัดความยาว (BufferedReader.readLine ยาวได้ไม่จำกัด)
+// บรรทัดยาวเกิน maxBytes -> ProtocolException ทันที ไม่อ่านต่อจนจบบรรทัด
+public class BoundedLineReader {
+    private final InputStream in;
+    private final int maxBytes;
+    private final byte[] buf = new byte[4096];
+    private int pos = 0, limit = 0;
+    private final byte[] line;
+
+    public BoundedLineReader(InputStream in, int maxBytes) {
+        this.in = in;
+        this.maxBytes = maxBytes;
+        this.line = new byte[maxBytes];
+    }
+
+    // คืน null เมื่อ client ปิดการเชื่อมต่อ
+    public String readLine() throws IOException {
+        int len = readLineBytes();
+        return len < 0 ? null : new String(line, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // แบบไม่สร้าง String: บรรทัดอยู่ใน line() ตั้งแต่ 0 ถึงความยาวที่คืน (ใช้ได้จนกว่าจะอ่านบรรทัดถัดไป)
+    // คืน -1 เมื่อ client ปิดการเชื่อมต่อ
+    public int readLineBytes() throws IOException {
+        int len = 0;
+        while (true) {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return len == 0 ? -1 : len;
+                }
+            }
+            byte b = buf[pos++];
+            if (b == '\n') break;
+            if (len == maxBytes) throw new ProtocolException("Line longer than " + maxBytes + " bytes");
+            line[len++] = b;
+        }
+        if (len > 0 && line[len - 1] == '\r') len--;
+        return len;
+    }
+
+    public byte[] line() {
+        return line;
+    }
+}
@@ -0,0 +1,88 @@
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.ImageIO;
+
+// ตารางท่าทางของตัวละครหนึ่งตัว โหลดครั้งเดียวต่อ basePath แล้วทุก Player ที่ใช้ตัวละครนี้แชร์กัน
+// เปิดด้วย [State][Direction] ตอน update/วาดจึงเป็นแค่อ่าน array ไม่มีสร้าง String ไม่มี lookup HashMap
+// ท่าที่ไม่มีรูป (ฟันขึ้น/ลง) ชี้ไปรูปท่า Idle ทิศเดียวกันตั้งแต่ตอนโหลด แต่ยังใช้จังหวะ/การจบท่าของท่าตัวเอง
+final class CharacterAnimations {
+    private static final int TICKS_PER_FRAME = 6;   // update() 6 ครั้งต่อเฟรม (~10 fps ที่ 60 Hz)
+
+    static final class Animation {
+        final BufferedImage[] frames;
+        final int ticksPerFrame;
+        final boolean loops;   // false = เล่นจบแล้วกลับไป IDLE
+
+        Animation(BufferedImage[] frames, int ticksPerFrame, boolean loops) {
+            this.frames = frames;
+            this.ticksPerFrame = ticksPerFrame;
+            this.loops = loops;
+        }
+    }
+
+    private record Def(Player.State state, Player.Direction facing, String folder, int frames) {}
+
+    private static final Def[] DEFS = {
+            new Def(Player.State.IDLE,      Player.Direction.RIGHT, "boy_Right",       1),
+            new Def(Player.State.IDLE,      Player.Direction.LEFT,  "boy_Left",        1),
+            new Def(Player.State.IDLE,      Player.Direction.UP,    "boy_up",          1),
+            new Def(Player.State.IDLE,      Player.Direction.DOWN,  "boy_down",        1),
+            new Def(Player.State.WALKING,   Player.Direction.RIGHT, "boy_Right",       8),
+            new Def(Player.State.WALKING,   Player.Direction.LEFT,  "boy_Left",        8),
+            new Def(Player.State.WALKING,   Player.Direction.UP,    "boy_up",          2),
+            new Def(Player.State.WALKING,   Player.Direction.DOWN,  "boy_down",        2),
+            new Def(Player.State.ATTACKING, Player.Direction.RIGHT, "boy_Fight_Right", 6),
+            new Def(Player.State.ATTACKING, Player.Direction.LEFT,  "boy_Fight_Left",  6),
+    };
+
+    private static final Map<String, CharacterAnimations> cache = new ConcurrentHashMap<>();
+
+    private final Animation[][] table = new Animation[Player.State.values().length][Player.Direction.values().length];
+
+    // basePath เช่น "/assets/boy1/"
+    static CharacterAnimations forCharacter(String basePath) {
+        return cache.computeIfAbsent(basePath, CharacterAnimations::new);
+    }
+
+    Animation get(Player.State state, Player.Direction facing) {
+        return table[state.ordinal()][facing.ordinal()];
+    }
+
+    private CharacterAnimations(String basePath) {
+        SpriteAtlas atlas = SpriteAtlas.forCharacter(basePath); // null = ไม่มี atlas โหลดทีละไฟล์
+        for (Def d : DEFS) {
+            table[d.state().ordinal()][d.facing().ordinal()] =
+                    new Animation(loadFrames(atlas, basePath, d.folder(), d.frames()), TICKS_PER_FRAME, loops(d.state()));
+        }
+        for (Player.State s : Player.State.values()) {
+            for (Player.Direction f : Player.Direction.values()) {
+                if (table[s.ordinal()][f.ordinal()] != null) continue;
+                Animation idle = table[Player.State.IDLE.ordinal()][f.ordinal()];
+                table[s.ordinal()][f.ordinal()] = new Animation(idle.frames, TICKS_PER_FRAME, loops(s));
+            }
+        }
+    }
+
+    private static boolean loops(Player.State state) {
+        return state != Player.State.ATTACKING;
+    }
+
+    private static BufferedImage[] loadFrames(SpriteAtlas atlas, String basePath, String folder, int frameCount) {
+        BufferedImage[] frames = new BufferedImage[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            if (atlas != null) {
+                frames[i] = atlas.frame(folder, i);
+                if (frames[i] != null) continue;
+            }
+            String path = basePath + folder + "/" + folder + "_" + i + ".png";
+            try (InputStream stream = CharacterAnimations.class.getResourceAsStream(path)) {
+                if (stream != null) frames[i] = ImageIO.read(stream);
+            } catch (Exception e) {
+                System.err.println("❌ Error loading sprite: " + path);
+            }
+        }
+        return frames;
+    }
+}
@@ -1,5 +1,6 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 public class
 CharacterSelectionPanel extends JPanel {
@@ -22,9 +23,9 @@ CharacterSelectionPanel extends JPanel {
         grid.setOpaque(false);
         grid.setBorder(BorderFactory.createEmptyBorder(80, 80, 50, 80));
 
-        grid.add(createButton("Character 1", "/assets/boy1/preview.png", "boy1"));
-        grid.add(createButton("Character 2", "/assets/boy2/preview.png", "boy2"));
-        grid.add(createButton("Character 3", "/assets/boy3/preview.png", "boy3"));
+        grid.add(createButton("Character 1", "boy1"));
+        grid.add(createButton("Character 2", "boy2"));
+        grid.add(createButton("Character 3", "boy3"));
 
         add(grid, BorderLayout.CENTER);
 
@@ -38,13 +39,17 @@ CharacterSelectionPanel extends JPanel {
         add(bottom, BorderLayout.SOUTH);
     }
 
-    private JButton createButton(String name, String path, String id) {
+    private JButton createButton(String name, String id) {
         ImageIcon icon = null;
         try {
-            var url = getClass().getResource(path);
-            if (url != null) {
-                icon = new ImageIcon(new ImageIcon(url).getImage().getScaledInstance(128, 128, Image.SCALE_SMOOTH));
+            // preview อยู่ใน atlas ตัวเดียวกับที่ Player ใช้ต่อ (โหลดครั้งเดียว) ไม่มีก็อ่าน preview.png เอง
+            SpriteAtlas atlas = SpriteAtlas.forCharacter("/assets/" + id + "/");
+            Image preview = atlas != null ? atlas.get("preview") : null;
+            if (preview == null) {
+                var url = getClass().getResource("/assets/" + id + "/preview.png");
+                if (url != null) preview = new ImageIcon(url).getImage();
             }
+            if (preview != null) icon = new ImageIcon(scaled(preview, 128, 128));
         } catch (Exception ignored) {}
 
         JButton b = new JButton(name, icon);
@@ -54,4 +59,15 @@ CharacterSelectionPanel extends JPanel {
         b.addActionListener(e -> client.attemptLogin(playerName, id));
         return b;
     }
+
+    // ย่อครั้งเดียวด้วย bilinear แทน SCALE_SMOOTH (area averaging ช้ามากบน EDT)
+    private static BufferedImage scaled(Image src, int w, int h) {
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
+    }
 }
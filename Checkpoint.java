@@ -0,0 +1,164 @@
+import java.awt.Point;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// รูปแบบ checkpoint ของ server ทั้งตัว: ผู้เล่นทุก session (ตำแหน่ง hp ดาบ token skill event ที่ยังไม่ ACK)
+// + ทุกห้อง (seq EVT ของผู้ชม, seed, tick, ของในห้อง, หลุมศพ, ลำดับคนตาย) เขียนเป็น binary แน่นๆ ลง ByteBuffer
+// encode บน simulation thread (เป็นการ copy state ณ tick นั้น) ส่วนเขียนไฟล์เป็นงานของ CheckpointFile
+// decode แล้วได้ PlayerState / Match ตัวใหม่ทั้งหมด ไม่มี connection (ทุกคนต้อง RESUME เข้ามาใหม่)
+final class Checkpoint {
+    private Checkpoint() {}
+
+    // ผลของ decode พร้อมใส่กลับเข้า Server
+    static final class Image {
+        long tick, createdAt;
+        int nextMatchId, nextPlayerId;
+        final List<PlayerState> players = new ArrayList<>();
+        final List<Match> matches = new ArrayList<>();
+    }
+
+    static void encode(ByteBuffer out, long tick, int nextMatchId, int nextPlayerId,
+                       Collection<PlayerState> players, Collection<Match> matches) {
+        out.putLong(tick);
+        out.putLong(System.currentTimeMillis());
+        out.putInt(nextMatchId);
+        out.putInt(nextPlayerId);
+
+        out.putInt(players.size());
+        for (PlayerState p : players) {
+            putString(out, p.name);
+            putString(out, p.characterId);
+            putString(out, p.sessionToken);
+            out.putInt(p.skill);
+            out.putInt(p.x);
+            out.putInt(p.y);
+            out.putInt(p.hp);
+            out.put((byte) ((p.hasSword ? 1 : 0) | (p.isAlive ? 2 : 0) | (p.isReady ? 4 : 0)));
+            putString(out, p.actionState);
+            putString(out, p.facingDirection);
+            out.putInt(p.match == null ? 0 : p.match.id);
+            p.events.writeTo(out);
+        }
+
+        out.putInt(matches.size());
+        for (Match m : matches) {
+            MatchSimulation sim = m.sim;
+            out.putInt(m.id);
+            out.putInt(m.roomEventSeq());
+            out.putLong(sim.seed());
+            out.putLong(sim.ticks());
+            out.putInt(sim.players.size());
+            for (String name : sim.players.keySet()) putString(out, name);
+            out.putInt(sim.items.nextId());
+            out.putInt(sim.items.all().size());
+            for (ItemState it : sim.items.all()) {
+                out.putInt(it.id);
+                out.put((byte) it.type.code);
+                out.putInt(it.x);
+                out.putInt(it.y);
+                out.put((byte) (it.onGround ? 1 : 0));
+                putString(out, it.ownerName);
+            }
+            out.putInt(sim.graves.size());
+            for (Point g : sim.graves) {
+                out.putInt(g.x);
+                out.putInt(g.y);
+            }
+            out.putInt(sim.deathOrder.size());
+            for (String name : sim.deathOrder) putString(out, name);
+        }
+    }
+
+    // ข้อมูลเสีย/ไม่ครบ -> RuntimeException (BufferUnderflowException ฯลฯ) คนเรียกข้ามก้อนนี้ไป
+    static Image decode(ByteBuffer in) {
+        Image image = new Image();
+        image.tick = in.getLong();
+        image.createdAt = in.getLong();
+        image.nextMatchId = in.getInt();
+        image.nextPlayerId = in.getInt();
+
+        Map<String, PlayerState> byName = new HashMap<>();
+        Map<PlayerState, Integer> matchOf = new HashMap<>();
+        int playerCount = in.getInt();
+        for (int i = 0; i < playerCount; i++) {
+            String name = getString(in);
+            String characterId = getString(in);
+            String token = getString(in);
+            int skill = in.getInt();
+            int x = in.getInt(), y = in.getInt(), hp = in.getInt();
+            int flags = in.get();
+            PlayerState p = new PlayerState(x, y, hp, (flags & 1) != 0, (flags & 2) != 0, characterId);
+            p.isReady = (flags & 4) != 0;
+            p.name = name;
+            p.sessionToken = token;
+            p.skill = skill;
+            p.actionState = getString(in).intern();      // ให้เป็น object เดียวกับค่าคงที่ในโค้ด
+            p.facingDirection = getString(in).intern();
+            int matchId = in.getInt();
+            p.events.readFrom(in);
+            if (matchId != 0) matchOf.put(p, matchId);
+            byName.put(name, p);
+            image.players.add(p);
+        }
+
+        int matchCount = in.getInt();
+        for (int i = 0; i < matchCount; i++) {
+            int id = in.getInt();
+            int roomEventSeq = in.getInt();
+            long seed = in.getLong();
+            long ticks = in.getLong();
+            int memberCount = in.getInt();
+            List<PlayerState> members = new ArrayList<>(memberCount);
+            for (int j = 0; j < memberCount; j++) {
+                PlayerState p = byName.get(getString(in));
+                if (p != null && matchOf.getOrDefault(p, 0) == id) members.add(p);
+            }
+            MatchSimulation sim = new MatchSimulation(seed, members);
+            int nextItemId = in.getInt();
+            int itemCount = in.getInt();
+            for (int j = 0; j < itemCount; j++) {
+                int itemId = in.getInt();
+                ItemType type = ItemType.fromCode((char) in.get());
+                int x = in.getInt(), y = in.getInt();
+                boolean onGround = in.get() != 0;
+                String owner = getString(in);
+                if (type != null) sim.items.restore(itemId, type, x, y, onGround, owner);
+            }
+            sim.items.restoreNextId(nextItemId);
+            int graveCount = in.getInt();
+            List<Point> graves = new ArrayList<>(graveCount);
+            for (int j = 0; j < graveCount; j++) graves.add(new Point(in.getInt(), in.getInt()));
+            int deaths = in.getInt();
+            List<String> deathOrder = new ArrayList<>(deaths);
+            for (int j = 0; j < deaths; j++) deathOrder.add(getString(in));
+            sim.restore(ticks, graves, deathOrder);
+            Match match = new Match(id, sim);
+            match.restoreRoomEventSeq(roomEventSeq);
+            image.matches.add(match);
+        }
+        for (PlayerState p : image.players) {
+            if (p.match == null) p.isReady = false; // คิวหาห้องไม่ได้เก็บไว้ กด READY ใหม่
+        }
+        return image;
+    }
+
+    // ความยาว 2 byte + UTF-8 (-1 = null)
+    static void putString(ByteBuffer out, String s) {
+        if (s == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) b.length);
+        out.put(b);
+    }
+
+    static String getString(ByteBuffer in) {
+        int len = in.getShort();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+
+// ไฟล์ checkpoint แบบ memory-mapped: header 64 byte + 2 slot เขียนสลับกัน
+// แต่ละ slot มี header ของตัวเอง [CRC][ความยาว][generation][ข้อมูล] CRC คลุมตั้งแต่ความยาวไปจนจบข้อมูล
+// ก้อนใหม่ลง slot ที่ไม่ได้ถูกชี้อยู่ force ลงดิสก์ แล้วค่อยเขียน LATEST (int เดียว) ให้ชี้มา = จุด commit จุดเดียว
+// server ตายกลางทางก็ยังเหลือก้อนเก่าที่ครบอยู่เสมอ
+//
+// ฝั่งเขียน: simulation thread encode ลง buffer จาก acquire() แล้ว publish() writer thread ของไฟล์นี้เขียนต่อเอง
+// (มี buffer 2 ก้อน ถ้า writer ยังไม่เสร็จ acquire() คืน null = ข้าม checkpoint รอบนี้ tick ไม่ต้องรอดิสก์)
+// ฝั่งอ่าน: standby เปิดไฟล์เดียวกันแล้วเรียก readLatest() เป็นระยะ ได้ก้อนใหม่ที่ CRC ตรงเท่านั้น
+final class CheckpointFile implements Closeable {
+    private static final int MAGIC = 0x47434b50;   // "GCKP"
+    private static final int VERSION = 3;   // 2: เพิ่ม seq EVT ของห้อง 3: ความยาว/CRC/generation ย้ายไปอยู่ใน slot
+    private static final int HEADER = 64;
+    // offset ใน header ของไฟล์
+    private static final int SLOT_BYTES_AT = 8, LATEST_AT = 12;
+    // offset ใน header ของ slot
+    private static final int SLOT_CRC_AT = 0, SLOT_LENGTH_AT = 4, SLOT_GENERATION_AT = 8, SLOT_HEADER = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slotBytes;
+    private final CRC32 crc = new CRC32();   // ใช้โดย writer thread หรือ thread ที่อ่าน (ไม่ใช้พร้อมกันในไฟล์เดียว)
+    private long lastRead = 0;
+
+    // ฝั่งเขียน
+    private BlockingQueue<ByteBuffer> free, ready;
+    private Thread writer;
+
+    private CheckpointFile(FileChannel channel, MappedByteBuffer map, int slotBytes) {
+        this.channel = channel;
+        this.map = map;
+        this.slotBytes = slotBytes;
+    }
+
+    // ไฟล์ที่มีอยู่แล้วใช้ขนาด slot ตาม header ไม่งั้นสร้างใหม่ด้วย slotBytes
+    static CheckpointFile open(Path path, int slotBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() >= HEADER) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                channel.read(header, 0);
+                if (header.getInt(0) == MAGIC && header.getInt(4) == VERSION) slotBytes = header.getInt(SLOT_BYTES_AT);
+            }
+            long size = HEADER + 2L * slotBytes;
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) { // ไฟล์ใหม่ / รูปแบบเก่าอ่านไม่ได้ เริ่มใหม่
+                map.putInt(SLOT_BYTES_AT, slotBytes);
+                map.putInt(LATEST_AT, -1);
+                map.putInt(4, VERSION);
+                map.putInt(0, MAGIC);
+                map.force(0, HEADER);
+            }
+            return new CheckpointFile(channel, map, slotBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int slotBytes() {
+        return slotBytes;
+    }
+
+    // ===== ฝั่งเขียน (server ที่รันเกมอยู่) =====
+
+    void startWriter() {
+        if (writer != null) return;
+        free = new ArrayBlockingQueue<>(2);
+        ready = new ArrayBlockingQueue<>(2);
+        free.add(ByteBuffer.allocate(slotBytes - SLOT_HEADER));
+        free.add(ByteBuffer.allocate(slotBytes - SLOT_HEADER));
+        writer = new Thread(this::writeLoop, "CheckpointWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // buffer ว่างสำหรับ encode หรือ null ถ้า writer ยังเขียนก้อนก่อนๆ ไม่เสร็จ
+    ByteBuffer acquire() {
+        ByteBuffer b = free.poll();
+        if (b != null) b.clear();
+        return b;
+    }
+
+    void publish(ByteBuffer filled) {
+        filled.flip();
+        ready.add(filled);
+    }
+
+    // encode ไม่สำเร็จ (ใหญ่เกิน slot) คืน buffer โดยไม่เขียน
+    void recycle(ByteBuffer b) {
+        free.add(b);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer b;
+            try {
+                b = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                long start = System.nanoTime();
+                int bytes = b.remaining();
+                write(b);
+                ServerMetrics.recordCheckpoint(bytes, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                System.err.println("⚠ Checkpoint write failed: " + e);
+            } finally {
+                free.add(b);
+            }
+        }
+    }
+
+    private void write(ByteBuffer payload) {
+        int length = payload.remaining();
+        int latest = map.getInt(LATEST_AT);
+        long generation = latest < 0 ? 1 : map.getLong(slotBase(latest) + SLOT_GENERATION_AT) + 1;
+        int slot = latest == 0 ? 1 : 0;
+        int base = slotBase(slot);
+        map.putInt(base + SLOT_LENGTH_AT, length);
+        map.putLong(base + SLOT_GENERATION_AT, generation);
+        map.put(base + SLOT_HEADER, payload, payload.position(), length);
+        map.putInt(base + SLOT_CRC_AT, slotCrc(map, base, length));
+        map.force(base, SLOT_HEADER + length);
+
+        map.putInt(LATEST_AT, slot);   // commit: ก่อนบรรทัดนี้คนอ่านยังเห็นก้อนเก่าทั้งก้อน
+        map.force(0, HEADER);
+    }
+
+    private int slotBase(int slot) {
+        return HEADER + slot * slotBytes;
+    }
+
+    // CRC ของความยาว + generation + ข้อมูล (ทุกอย่างใน slot ยกเว้นช่อง CRC เอง)
+    private int slotCrc(ByteBuffer buf, int base, int length) {
+        crc.reset();
+        crc.update(buf.slice(base + SLOT_LENGTH_AT, SLOT_HEADER - SLOT_LENGTH_AT + length));
+        return (int) crc.getValue();
+    }
+
+    // ===== ฝั่งอ่าน (standby) =====
+
+    // ก้อนล่าสุดถ้าใหม่กว่าที่เคยอ่าน (copy ออกมาแล้ว writer เขียนทับต่อได้) ไม่งั้น null
+    // slot ที่ LATEST ชี้ CRC ไม่ตรง (writer เขียนทับระหว่าง copy / ไฟล์เสีย) ลองอีก slot แทน
+    ByteBuffer readLatest() {
+        int latest = map.getInt(LATEST_AT);
+        if (latest < 0) return null;
+        ByteBuffer copy = readSlot(latest);
+        if (copy == null) copy = readSlot(latest == 0 ? 1 : 0);
+        if (copy == null) return null;
+        lastRead = copy.getLong(SLOT_GENERATION_AT);
+        return copy.slice(SLOT_HEADER, copy.getInt(SLOT_LENGTH_AT));
+    }
+
+    // copy ทั้ง slot (header + ข้อมูล) ถ้าใหม่กว่า lastRead และ CRC ตรง ไม่งั้น null
+    private ByteBuffer readSlot(int slot) {
+        int base = slotBase(slot);
+        if (map.getLong(base + SLOT_GENERATION_AT) <= lastRead) return null;
+        int length = map.getInt(base + SLOT_LENGTH_AT);
+        if (length <= 0 || length > slotBytes - SLOT_HEADER) return null;
+
+        ByteBuffer copy = ByteBuffer.allocate(SLOT_HEADER + length);
+        copy.put(0, map, base, SLOT_HEADER + length);
+        if (copy.getInt(SLOT_LENGTH_AT) != length || copy.getLong(SLOT_GENERATION_AT) <= lastRead) return null;
+        return slotCrc(copy, 0, length) == copy.getInt(SLOT_CRC_AT) ? copy : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) writer.interrupt();
+        channel.close();
+    }
+}
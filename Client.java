@@ -6,9 +6,16 @@ import java.awt.*;
 import java.util.List;
 
 public class Client extends JFrame {
-    private Socket socket;
+    private static final int DEFAULT_PORT = 12345;
+    // ที่อยู่พิเศษ: เล่นกับ server ที่ฝังใน JVM นี้ผ่าน LoopbackTransport (java Client local [จำนวนหน้าต่าง])
+    static final String LOCAL_HOST = "local";
+    // server ส่ง PING ทุกวินาที เงียบนานกว่านี้ถือว่าสายหลุด
+    private static final int READ_TIMEOUT_MS = 3000;
+    private static final long RESUME_WINDOW_MS = 10_000;
+    private static final long RESUME_RETRY_MS = 200;
+    private Transport transport;
     private PrintWriter out;
-    private BufferedReader in;
+    private FrameReader in;
     private Thread receiverThread;
 
     private GamePanel gamePanel;
@@ -20,6 +27,15 @@ public class Client extends JFrame {
     private String serverIp = "localhost";
     private boolean connected = false;
 
+    // session ปัจจุบัน: node ที่ต่ออยู่จริง (หลัง redirect) และ token สำหรับ RESUME
+    private String nodeHost;
+    private int nodePort;
+    private volatile String sessionToken;
+    // seq ของ EVT ล่าสุดที่ใช้ไปแล้ว ตัวที่ server ส่งซ้ำ (seq <= นี้) แค่ ACK แล้วทิ้ง ใช้จาก receiver thread
+    private long lastEventSeq;
+    // ได้ EVT (ใหม่หรือซ้ำ) แล้วยังไม่ได้ ACK: ACK เป็นแบบสะสม ส่ง lastEventSeq ครั้งเดียวตอนอ่านหมดชุด
+    private boolean ackDue;
+
     public Client() {
         setTitle("PvP Fighting Game");
         setSize(800, 600);
@@ -53,6 +69,17 @@ public class Client extends JFrame {
         repaint();
     }
 
+    public void showSpectatorPanel(int roomId) {
+        getContentPane().removeAll();
+        gamePanel = new GamePanel();
+        gamePanel.setClient(this);
+        gamePanel.setSpectator(true);
+        add(gamePanel, BorderLayout.CENTER);
+        setTitle("PvP Fighting Game — watching match #" + roomId);
+        revalidate();
+        repaint();
+    }
+
     public void showGameOverScreen(List<String> rankings, Map<String, String> characterMap) {
         getContentPane().removeAll();
         GameOverPanel gameOverPanel = new GameOverPanel(rankings, this, characterMap);
@@ -62,6 +89,7 @@ public class Client extends JFrame {
     }
 
     public void backToMainMenu() {
+        setTitle("PvP Fighting Game");
         getContentPane().removeAll();
         mainMenuPanel = new MainMenuPanel(this);
         add(mainMenuPanel, BorderLayout.CENTER);
@@ -77,23 +105,30 @@ public class Client extends JFrame {
         new Thread(() -> {
             try {
                 // ✅ ปิด socket เก่าก่อน (ถ้ายังเชื่อมต่ออยู่)
-                if (connected && socket != null && !socket.isClosed()) {
-                    try { socket.close(); } catch (IOException ignored) {}
+                if (connected && transport != null && transport.isOpen()) {
+                    sessionToken = null; // ตั้งใจออกเอง ไม่ต้อง resume
+                    transport.close();
                     connected = false;
                     System.out.println("♻️ Reconnecting to server...");
                 }
 
-                // ✅ เปิดการเชื่อมต่อใหม่เสมอ
-                socket = new Socket(serverIp, 12345);
-                out = new PrintWriter(socket.getOutputStream(), true);
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                connected = true;
-
-                // ส่งข้อมูลตัวละคร
-                out.println("SELECT:" + playerName + ":" + characterId);
+                // ✅ เปิดการเชื่อมต่อใหม่เสมอ (serverIp อาจเป็น router หรือ game server ก็ได้)
+                String host = serverIp;
+                int port = DEFAULT_PORT;
+                int colon = serverIp.lastIndexOf(':');
+                if (colon > 0) {
+                    host = serverIp.substring(0, colon);
+                    port = Integer.parseInt(serverIp.substring(colon + 1));
+                }
+                String response = connectAndSelect(host, port, "-");
 
-                // รอ response
-                String response = in.readLine();
+                // router ตอบ REDIRECT:<host>:<port>:<token> -> ต่อไปที่ game node นั้นแทน
+                if (response != null && response.startsWith("REDIRECT:")) {
+                    String[] r = response.split(":", 4);
+                    transport.close();
+                    System.out.println("🧭 Routed to " + r[1] + ":" + r[2]);
+                    response = connectAndSelect(r[1], Integer.parseInt(r[2]), r[3]);
+                }
 
                 if (response == null) {
                     JOptionPane.showMessageDialog(this, "Server did not respond.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -108,12 +143,22 @@ public class Client extends JFrame {
                         receiverThread.interrupt();
                     }
 
-                    // ✅ เริ่ม thread รับข้อความ
+                    // ✅ เริ่ม thread รับข้อความ (session ใหม่ seq เริ่มที่ 1)
+                    lastEventSeq = 0;
+                    ackDue = false;
                     receiverThread = new Thread(this::receiveMessages);
                     receiverThread.start();
 
                     SwingUtilities.invokeLater(() -> showGamePanel(playerName, characterId));
 
+                } else if ("ERROR:SERVER_BUSY".equals(response)) {
+                    JOptionPane.showMessageDialog(this,
+                            "The server is full right now. Please try again in a moment.",
+                            "Server Busy", JOptionPane.WARNING_MESSAGE);
+                } else if ("ERROR:NO_SERVERS".equals(response)) {
+                    JOptionPane.showMessageDialog(this,
+                            "No game servers are available right now.",
+                            "Connection Error", JOptionPane.WARNING_MESSAGE);
                 } else if ("ERROR:GAME_ALREADY_STARTED".equals(response)) {
                     JOptionPane.showMessageDialog(this,
                             "Cannot join. The game has already started!",
@@ -124,7 +169,7 @@ public class Client extends JFrame {
                             "Connection Error", JOptionPane.ERROR_MESSAGE);
                 }
 
-            } catch (IOException e) {
+            } catch (IOException | NumberFormatException e) {
                 System.err.println("❌ Failed to connect: " + e.getMessage());
                 JOptionPane.showMessageDialog(this,
                         "Unable to connect to server: " + e.getMessage(),
@@ -134,10 +179,111 @@ public class Client extends JFrame {
     }
 
 
+    // ต่อ SpectatorRelay แบบผู้ชม: ไม่มี session ไม่ต้อง resume หลุดก็จบ
+    public void attemptSpectate(String relayAddress) {
+        new Thread(() -> {
+            try {
+                if (connected && transport != null && transport.isOpen()) {
+                    sessionToken = null;
+                    transport.close();
+                    connected = false;
+                }
+                String host = relayAddress;
+                int port = 12400;
+                int colon = relayAddress.lastIndexOf(':');
+                if (colon > 0) {
+                    host = relayAddress.substring(0, colon);
+                    port = Integer.parseInt(relayAddress.substring(colon + 1));
+                }
+                openTransport(host, port);
+                out.println("WATCH:*:deflate");
+                String response = in.readLine();
+
+                if (response != null && response.startsWith("SPECTATING:")) {
+                    int roomId = Integer.parseInt(response.substring("SPECTATING:".length()));
+                    System.out.println("👀 Watching match #" + roomId);
+                    SwingUtilities.invokeAndWait(() -> showSpectatorPanel(roomId));
+                    lastEventSeq = 0;
+                    ackDue = false;
+                    receiverThread = new Thread(this::receiveMessages);
+                    receiverThread.start();
+                } else if ("ERROR:NO_MATCHES".equals(response)) {
+                    JOptionPane.showMessageDialog(this, "No matches are being played right now.",
+                            "Spectate", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this, "Unexpected relay response: " + response,
+                            "Connection Error", JOptionPane.ERROR_MESSAGE);
+                }
+            } catch (IOException | NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Unable to connect to relay: " + e.getMessage(),
+                        "Connection Error", JOptionPane.ERROR_MESSAGE);
+            } catch (InterruptedException | java.lang.reflect.InvocationTargetException e) {
+                System.err.println("❌ Failed to open spectator view: " + e);
+            }
+        }).start();
+    }
+
+    // ต่อใหม่ ส่ง SELECT แล้วคืนบรรทัดแรกที่ได้กลับมา
+    private String connectAndSelect(String host, int port, String joinToken) throws IOException {
+        openTransport(host, port);
+
+        // ส่งข้อมูลตัวละคร
+        out.println("SELECT:" + playerName + ":" + characterId + ":deflate:" + joinToken);
+
+        // รอ response
+        return readHandshakeReply();
+    }
+
+    // server คนเยอะ: ได้ QUEUE:<ลำดับ>:<จำนวนที่รอ> ทุกวินาทีจนกว่าจะถึงคิว แล้วค่อยได้คำตอบจริง
+    private String readHandshakeReply() throws IOException {
+        String response = in.readLine();
+        while (response != null && response.startsWith("QUEUE:")) {
+            String[] q = response.split(":");
+            String title = "PvP Fighting Game — waiting to join (" + q[1] + "/" + q[2] + ")";
+            SwingUtilities.invokeLater(() -> setTitle(title));
+            response = in.readLine();
+        }
+        SwingUtilities.invokeLater(() -> setTitle("PvP Fighting Game"));
+        return response;
+    }
+
+    private void openTransport(String host, int port) throws IOException {
+        transport = LOCAL_HOST.equals(host) ? Server.connectLocal() : SocketTransport.connect(host, port);
+        transport.setReadTimeout(READ_TIMEOUT_MS);
+        out = new PrintWriter(transport.output(), true);
+        in = new FrameReader(transport.input());
+        nodeHost = host;
+        nodePort = port;
+        connected = true;
+    }
+
     private void receiveMessages() {
+        while (readUntilDisconnect() && tryResume()) {
+            System.out.println("🔁 Session resumed as " + playerName);
+        }
+    }
+
+    // คืน true ถ้าหลุดแบบไม่ได้ตั้งใจ (ควรลอง resume)
+    private boolean readUntilDisconnect() {
+        Transport current = transport;
         try {
             String line;
-            while ((line = in.readLine()) != null) {
+            while ((line = nextLine()) != null) {
+                if (line.startsWith("SESSION:")) {
+                    sessionToken = line.substring("SESSION:".length());
+                    continue;
+                }
+                if (line.equals(FrameReader.COMPRESS_DEFLATE)) {
+                    in.enableCompression(); // หลังบรรทัดนี้ server ส่งเป็น frame
+                    continue;
+                }
+                if (line.startsWith("PING:")) {
+                    sendMessage("PONG:" + line.substring(5)); // ตอบทันทีเพื่อให้ server วัด RTT ได้แม่น
+                    continue;
+                }
+                if (line.startsWith("EVT:")) {
+                    if (!acceptEvent(line)) continue;
+                }
                 if (gamePanel != null) {
                     gamePanel.processServerMessage(line);
                 }
@@ -145,10 +291,78 @@ public class Client extends JFrame {
         } catch (IOException e) {
             System.err.println("📴 Lost connection: " + e.getMessage());
         }
+        return sessionToken != null && transport == current;
+    }
+
+    // ก่อนจะ block รอบรรทัดถัดไปส่ง ACK ที่ค้างไว้ server ส่งซ้ำมาเป็นร้อยตัวก็ ACK กลับแค่ครั้งเดียว
+    private String nextLine() throws IOException {
+        if (ackDue && !in.ready()) {
+            ackDue = false;
+            sendMessage("ACK:" + lastEventSeq);
+        }
+        return in.readLine();
+    }
+
+    // EVT:<seq>:<ชนิด>:<ข้อมูล> ตัวซ้ำก็ต้อง ACK (เผื่อ ACK ก่อนหน้าหาย) แต่รวมเป็นครั้งเดียวใน nextLine
+    // คืน false ถ้าเคยได้แล้ว
+    private boolean acceptEvent(String line) {
+        int sep = line.indexOf(':', 4);
+        if (sep < 0) return false;
+        long seq;
+        try {
+            seq = Long.parseLong(line, 4, sep, 10);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        ackDue = true;
+        if (seq <= lastEventSeq) return false;
+        lastEventSeq = seq;
+        return true;
+    }
+
+    // ต่อกลับ node เดิมด้วย session token: server เก็บตัวละครไว้ให้ช่วง grace แล้วส่ง state เต็มกลับมา
+    private boolean tryResume() {
+        transport.close();
+        connected = false;
+        long deadline = System.currentTimeMillis() + RESUME_WINDOW_MS;
+        while (System.currentTimeMillis() < deadline && sessionToken != null) {
+            try {
+                openTransport(nodeHost, nodePort);
+                out.println("RESUME:" + sessionToken + ":deflate");
+                String response = readHandshakeReply();
+                if (response != null && response.startsWith("RESUMED:")) {
+                    playerName = response.substring("RESUMED:".length());
+                    return true;
+                }
+                transport.close();
+                if ("ERROR:SERVER_BUSY".equals(response)) { // node ยังอยู่ แค่คิวเต็ม ลองใหม่ในช่วงเวลาที่เหลือ
+                    connected = false;
+                    Thread.sleep(RESUME_RETRY_MS);
+                    continue;
+                }
+                connected = false;
+                break; // server ไม่รู้จัก session นี้แล้ว ลองต่อไปก็ไม่มีประโยชน์
+            } catch (IOException e) {
+                connected = false;
+                try { Thread.sleep(RESUME_RETRY_MS); } catch (InterruptedException ie) { return false; }
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        sessionToken = null;
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(this, "Connection to the server was lost.",
+                    "Disconnected", JOptionPane.WARNING_MESSAGE);
+            backToMainMenu();
+        });
+        return false;
     }
 
     public void sendMessage(String msg) {
-        if (out != null && connected) out.println(msg);
+        if (out != null && connected) {
+            out.println(msg);
+            ClientMetrics.bytesOut.add(msg.length() + 1);
+        }
     }
 
     public void setServerIp(String ip) { this.serverIp = ip; }
@@ -156,6 +370,20 @@ public class Client extends JFrame {
     public String getPlayerName() { return playerName; }
 
     public static void main(String[] args) {
+        GameEvents.startRecordingIfRequested();
+        if (args.length > 0 && args[0].equals(LOCAL_HOST)) {
+            // hot-seat: server ฝังใน JVM นี้ เปิดหลายหน้าต่างต่อเข้าห้องเดียวกัน
+            int windows = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+            Server.startEmbedded();
+            SwingUtilities.invokeLater(() -> {
+                for (int i = 0; i < windows; i++) {
+                    Client c = new Client();
+                    c.setServerIp(LOCAL_HOST);
+                    c.setLocation(c.getX() + i * 40, c.getY() + i * 40);
+                }
+            });
+            return;
+        }
         SwingUtilities.invokeLater(Client::new);
     }
 }
@@ -0,0 +1,353 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+// การเชื่อมต่อฝั่ง server ของ client หนึ่งคน
+// มี writer thread ของตัวเอง + คิวขาออก เพื่อไม่ให้ client ที่เน็ตช้าไปถ่วง simulation thread
+// คิวเก็บ SharedFrame (bytes ที่ encode แล้ว) writer เขียนลง transport ตรงๆ แบบ gathering write
+public class ClientConnection {
+    private static final int MAX_QUEUED = 512;          // เกินนี้ถือว่า client ค้าง ตัดทิ้ง
+    private static final int MAX_BATCH = 32;
+    private static final SharedFrame SNAPSHOT_SLOT = SharedFrame.encodeLine("<snapshot>"); // marker เทียบด้วย ==
+    private static final SharedFrame CLOSE_SLOT = SharedFrame.encodeLine("<close>");
+    private static final SharedFrame COMPRESS_SLOT = SharedFrame.encodeLine("<compress>");
+
+    // ค่าตัดสินใจ adaptive rate
+    static final int MAX_SNAPSHOT_INTERVAL = 4;        // ช้าสุด 1 ใน 4 tick (5 Hz)
+    private static final long HIGH_RTT_NANOS = 250_000_000L;
+    private static final long GOOD_RTT_NANOS = 120_000_000L;
+    private static final int BACKLOG_LIMIT = 2;
+    private static final int PROBE_LIMIT = 2;            // ส่งลื่นแล้วเพดานขึ้นได้ไม่เกินกี่เท่าของที่วัดได้จริง
+    // ค่าที่วัดได้ถือไว้นานเท่านี้แล้วค่อยปรับทีละ 1/4 ตาม RTT (ต่อช่วง ไม่ใช่ต่อ write):
+    // RTT ดี = ขึ้น (เกินเพดานก็ลืมไป), RTT สูง = ของค้างใน link อยู่ ลดลง
+    private static final long BANDWIDTH_HOLD_NANOS = 2_000_000_000L;
+    private static final long MAX_TRACKED_BANDWIDTH = 1L << 30;
+    private static final long MIN_TRACKED_BANDWIDTH = 1024;
+    // งบ bytes ต่อ STATE หนึ่งก้อน: บังคับทุก client ด้วย -Dgame.snapshotBudget (ทดสอบ link ช้า) ไม่งั้นคิดจาก bandwidth
+    private static final int FORCED_SNAPSHOT_BUDGET = Integer.getInteger("game.snapshotBudget", 0);
+    private static final int MIN_SNAPSHOT_BUDGET = 160;   // ตัวเอง + ส่วนบอกสมาชิก ต้องพอเสมอ
+    // deflate ของ frame ขาออก (ใช้ทั้ง server และ relay): ระดับ และขนาดที่เล็กกว่านี้ส่งดิบ
+    private static final int COMPRESS_LEVEL = Integer.getInteger("game.compress.level", 1);
+    private static final int COMPRESS_MIN_BYTES = Integer.getInteger("game.compress.minBytes", 256);
+
+    private final Transport transport;
+    private final LinkedBlockingQueue<SharedFrame> outbound = new LinkedBlockingQueue<>();
+    private final AtomicReference<SharedFrame> pendingSnapshot = new AtomicReference<>();
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+
+    // บีบอัดขาออก (ใช้โดย writer thread เท่านั้น) เปิดหลัง handshake ถ้า client รองรับ
+    private Deflater deflater;
+    private ByteBuffer deflateOut;
+    private final ByteBuffer[] headers = new ByteBuffer[MAX_BATCH];
+    // ตัวนับของห้องที่อยู่ตอนนี้ null = ห้องนี้ไม่บีบ (ยังเป็น frame แต่ส่งดิบ) ตั้งจาก simulation thread
+    private volatile ServerMetrics.Compression compression;
+
+    // RTT / jitter (ns) อัปเดตจาก network thread ตอนได้ PONG
+    private volatile long rttNanos = -1;
+    private volatile long jitterNanos = 0;
+    // bytes/sec ที่ส่งออกไปได้จริงตอนที่ socket ติดขัด (-1 = ยังไม่รู้ / ไม่เคยติด) ใช้คิดงบ STATE
+    private volatile long measuredBandwidth = -1;
+    private long measuredAt;   // writer thread เท่านั้น
+    // เพดานที่ใช้ตัดสิน rate: เท่ากับที่วัดได้ แล้วค่อยๆ ขึ้นตอนส่งลื่น (ไม่เกิน PROBE_LIMIT เท่า)
+    private volatile long bandwidthEstimate = -1;
+
+    // ใช้โดย simulation thread เท่านั้น
+    int snapshotInterval = 1;
+    int ticksSinceSnapshot = 0;
+    int lastSnapshotBytes = 0;
+
+    public ClientConnection(Transport transport, String name) {
+        this.transport = transport;
+        this.writerThread = new Thread(this::writeLoop, "Writer-" + name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    // ข้อความทั่วไป (START_GAME, WINNER, PING ...) ส่งตามลำดับ ห้ามทิ้ง
+    public void send(String msg) {
+        SharedFrame frame = SharedFrame.encodeLine(msg);
+        send(frame);
+        frame.release();
+    }
+
+    // frame ที่แชร์กับ connection อื่น: retain ของตัวเองแล้วเข้าคิว คนเรียกยังถือ reference เดิมอยู่
+    public void send(SharedFrame frame) {
+        if (closed) return;
+        if (outbound.size() >= MAX_QUEUED) {
+            System.out.println("⚠ Slow client dropped (" + outbound.size() + " queued)");
+            close();
+            return;
+        }
+        SharedFrame mine = frame.retain();
+        outbound.offer(mine);
+        // close() เกิดระหว่างนี้: writer อาจ drain คิวไปแล้ว ถ้าของเรายังค้างอยู่ต้องคืนเอง
+        if (closed && outbound.remove(mine)) mine.release();
+    }
+
+    // ข้อความที่ส่งก่อนหน้านี้ยังเป็นบรรทัดปกติ หลังจากนี้ทุกอย่างเป็น frame (ดู FrameReader)
+    public void enableCompression(ServerMetrics.Compression stats) {
+        compression = stats;
+        outbound.offer(COMPRESS_SLOT);
+    }
+
+    // ย้ายห้อง: บีบต่อ (นับเข้าห้องใหม่) หรือหยุดบีบ (null) ใช้ได้หลัง enableCompression เท่านั้น
+    void compressFor(ServerMetrics.Compression stats) {
+        compression = stats;
+    }
+
+    // STATE ใหม่แทนที่ STATE เก่าที่ยังไม่ได้ส่ง ไม่มี backlog สะสม
+    public void sendSnapshot(SharedFrame snapshot) {
+        if (closed) return;
+        lastSnapshotBytes = snapshot.size();
+        SharedFrame old = pendingSnapshot.getAndSet(snapshot.retain());
+        if (old != null) {
+            old.release();
+            ServerMetrics.snapshotsCoalesced.increment();
+        } else {
+            outbound.offer(SNAPSHOT_SLOT);
+        }
+        if (closed) releasePending();
+    }
+
+    private void writeLoop() {
+        SharedFrame[] frames = new SharedFrame[MAX_BATCH];
+        ByteBuffer[] views = new ByteBuffer[MAX_BATCH * 2];
+        boolean closeAfter = false;
+        try {
+            while (!closed && !closeAfter) {
+                // เอาทุกอย่างที่ค้างในคิวมาเขียนรวดเดียว (gathering write) ประหยัด syscall
+                int n = 0;
+                boolean compressAfter = false;
+                SharedFrame f = outbound.take();
+                while (f != null) {
+                    if (f == CLOSE_SLOT) {
+                        closeAfter = true;
+                        break;
+                    }
+                    if (f == COMPRESS_SLOT) {
+                        compressAfter = true;
+                        break;
+                    }
+                    if (f == SNAPSHOT_SLOT) f = pendingSnapshot.getAndSet(null);
+                    if (f != null) frames[n++] = f;
+                    if (n == MAX_BATCH) break;
+                    f = outbound.poll();
+                }
+
+                if (n > 0) {
+                    try {
+                        int count = deflater == null ? plainViews(frames, n, views) : framedViews(frames, n, views);
+                        writeFully(views, count);
+                    } finally {
+                        for (int i = 0; i < n; i++) {
+                            frames[i].release();
+                            frames[i] = null;
+                        }
+                        Arrays.fill(views, null);
+                    }
+                }
+                if (compressAfter && deflater == null) {
+                    deflater = new Deflater(COMPRESS_LEVEL, true);
+                    deflateOut = ByteBuffer.allocateDirect(64 * 1024);
+                    for (int i = 0; i < MAX_BATCH; i++) headers[i] = ByteBuffer.allocateDirect(4);
+                }
+            }
+        } catch (InterruptedException | IOException ignored) {
+        } finally {
+            if (deflater != null) deflater.end();
+            close();
+            // frame ที่ยังค้างในคิวถือ reference ไว้ คืนให้หมดไม่งั้น buffer ไม่กลับเข้า pool
+            for (SharedFrame f = outbound.poll(); f != null; f = outbound.poll()) {
+                if (f != SNAPSHOT_SLOT && f != CLOSE_SLOT && f != COMPRESS_SLOT) f.release();
+            }
+        }
+    }
+
+    private int plainViews(SharedFrame[] frames, int n, ByteBuffer[] views) {
+        for (int i = 0; i < n; i++) views[i] = frames[i].view();
+        return n;
+    }
+
+    // โหมด frame: header 4 byte + payload
+    // frame เล็กกว่า threshold ส่ง bytes เดิมที่แชร์อยู่ (ไม่ copy) ที่ใหญ่กว่าบีบผ่าน Deflater ของ connection นี้
+    private int framedViews(SharedFrame[] frames, int n, ByteBuffer[] views) {
+        deflateOut.clear();
+        ServerMetrics.Compression stats = compression;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            ByteBuffer src = frames[i].view();
+            int rawSize = src.remaining();
+            ByteBuffer header = headers[i].clear();
+            if (stats == null || rawSize < COMPRESS_MIN_BYTES) {
+                header.putInt(rawSize).flip();
+                views[count++] = header;
+                views[count++] = src;
+                if (stats != null) stats.recordSkipped();
+                continue;
+            }
+
+            long start = System.nanoTime();
+            ensureDeflateRoom(rawSize + rawSize / 8 + 64);
+            int from = deflateOut.position();
+            deflater.setInput(src);
+            while (true) {
+                deflater.deflate(deflateOut, Deflater.SYNC_FLUSH);
+                if (deflateOut.hasRemaining()) break;
+                // ไม่พอจริงๆ: ย้ายส่วนที่บีบแล้วไป buffer ใหญ่ขึ้นแล้ววนต่อ
+                ByteBuffer bigger = ByteBuffer.allocateDirect(deflateOut.capacity() * 2);
+                deflateOut.flip().position(from);
+                bigger.put(deflateOut);
+                deflateOut = bigger;
+                from = 0;
+            }
+            ByteBuffer out = deflateOut.duplicate();
+            out.limit(deflateOut.position()).position(from);
+            int packed = out.remaining();
+            header.putInt(packed | FrameReader.COMPRESSED_FLAG).flip();
+            views[count++] = header;
+            views[count++] = out;
+            stats.record(rawSize, packed, System.nanoTime() - start);
+        }
+        return count;
+    }
+
+    // ขยาย buffer ใหม่ถ้าที่ว่างไม่พอ slice ที่ชี้ buffer เก่ายังใช้ได้จนจบ batch
+    private void ensureDeflateRoom(int needed) {
+        if (deflateOut.remaining() >= needed) return;
+        int size = Math.max(deflateOut.capacity() * 2, needed * 2);
+        deflateOut = ByteBuffer.allocateDirect(size);
+    }
+
+    private void writeFully(ByteBuffer[] views, int n) throws IOException {
+        long bytes = 0;
+        long start = System.nanoTime();
+        int first = 0;
+        while (first < n) {
+            bytes += transport.write(views, first, n - first);
+            while (first < n && !views[first].hasRemaining()) first++;
+        }
+        long end = System.nanoTime();
+        long took = end - start;
+        // write ที่ block นานแปลว่าติด bandwidth ของ link ไม่ใช่ CPU
+        if (took > 2_000_000L) {
+            long bps = Math.min(bytes * 1_000_000_000L / took, MAX_TRACKED_BANDWIDTH);
+            long prev = measuredBandwidth;
+            // ลงเร็ว ขึ้นช้า: ติดแปลว่าที่ถือไว้สูงเกินแล้ว
+            long measured = prev < 0 ? bps : (bps < prev ? (prev + bps) / 2 : (prev * 7 + bps) / 8);
+            measuredBandwidth = measured;
+            bandwidthEstimate = measured;
+            measuredAt = end;
+        } else if (measuredBandwidth > 0) {
+            long measured = measuredBandwidth;
+            if (end - measuredAt > BANDWIDTH_HOLD_NANOS) {
+                long rtt = rttNanos;
+                if (rtt > HIGH_RTT_NANOS) {
+                    measured = Math.max(MIN_TRACKED_BANDWIDTH, measured - measured / 4);
+                } else if (rtt >= 0 && rtt < GOOD_RTT_NANOS) {
+                    measured += measured / 4;
+                    if (measured > MAX_TRACKED_BANDWIDTH) measured = -1;
+                }
+                measuredAt = end;
+                measuredBandwidth = measured;
+            }
+            // ส่งได้ลื่นแล้ว ค่อยๆ ปล่อยเพดานขึ้น แต่ไม่ห่างจากที่วัดได้จริงเกินไป
+            long est = bandwidthEstimate;
+            bandwidthEstimate = measured < 0 ? -1 : Math.min(est + est / 4, measured * PROBE_LIMIT);
+        }
+        ServerMetrics.bytesOut.add(bytes);
+    }
+
+    // ===== Heartbeat =====
+    public void sendPing() {
+        send("PING:" + System.nanoTime());
+    }
+
+    public void onPong(String payload) {
+        try {
+            onPong(Long.parseLong(payload));
+        } catch (NumberFormatException ignored) {}
+    }
+
+    // sent = ค่า System.nanoTime() ที่ส่งไปใน PING
+    public void onPong(long sent) {
+        long sample = System.nanoTime() - sent;
+        if (sample < 0) return;
+        long prev = rttNanos;
+        if (prev >= 0) {
+            // jitter แบบ RFC 3550: ค่าเฉลี่ยเคลื่อนที่ของความต่าง RTT ติดกัน
+            jitterNanos += (Math.abs(sample - prev) - jitterNanos) / 16;
+            rttNanos = (prev * 7 + sample) / 8;
+        } else {
+            rttNanos = sample;
+        }
+        ServerMetrics.recordRtt(sample);
+        send("NET:" + getRttMillis() + ":" + getJitterMillis());
+    }
+
+    public long getRttMillis() { return rttNanos < 0 ? -1 : rttNanos / 1_000_000L; }
+    public long getJitterMillis() { return jitterNanos / 1_000_000L; }
+    public int getQueueDepth() { return outbound.size(); }
+
+    // เรียกทุก tick จาก simulation thread: คืน true ถ้า tick นี้ควรส่ง STATE ให้ client นี้
+    boolean shouldSendSnapshot() {
+        ticksSinceSnapshot++;
+        if (ticksSinceSnapshot < snapshotInterval) {
+            ServerMetrics.snapshotsSkipped.increment();
+            return false;
+        }
+        ticksSinceSnapshot = 0;
+        adaptRate();
+        return true;
+    }
+
+    // งบ bytes ของ STATE ก้อนนี้ (0 = ส่งเต็มได้) จาก bandwidth ที่วัดได้ตอน socket ติด ที่ rate ปัจจุบัน
+    // ใช้ค่าที่วัดได้จริง ไม่ใช่เพดานที่ probe ขึ้น: PSTATE ก้อนเล็กเขียนลื่นเสมอ ถ้าใช้เพดานงบจะโตจนกลับไปส่งเต็ม
+    int snapshotBudget(int fullBytes) {
+        int budget = FORCED_SNAPSHOT_BUDGET;
+        if (budget <= 0) {
+            long bw = measuredBandwidth;   // ไม่เกิน MAX_TRACKED_BANDWIDTH คูณต่อไม่ล้น
+            if (bw <= 0) return 0;
+            budget = (int) Math.min(Integer.MAX_VALUE, bw / 10 * 8 / (1000 / 50) * snapshotInterval);
+        }
+        return fullBytes <= budget ? 0 : Math.max(budget, MIN_SNAPSHOT_BUDGET);
+    }
+
+    private void adaptRate() {
+        long rtt = rttNanos;
+        long bw = bandwidthEstimate;
+        long needed = (long) lastSnapshotBytes * (1000 / 50) / snapshotInterval;
+        boolean congested = getQueueDepth() > BACKLOG_LIMIT
+                || (bw > 0 && needed > bw / 10 * 8)
+                || rtt > HIGH_RTT_NANOS;
+
+        if (congested) {
+            if (snapshotInterval < MAX_SNAPSHOT_INTERVAL) snapshotInterval *= 2;
+        } else if (getQueueDepth() == 0 && rtt >= 0 && rtt < GOOD_RTT_NANOS) {
+            if (snapshotInterval > 1) snapshotInterval /= 2;
+        }
+    }
+
+    public boolean isClosed() { return closed; }
+
+    // ส่งข้อความที่ค้างในคิวให้หมดก่อนแล้วค่อยปิด (เช่นหลัง ERROR)
+    public void closeAfterFlush() {
+        outbound.offer(CLOSE_SLOT);
+    }
+
+    public void close() {
+        if (closed) return;
+        closed = true;
+        writerThread.interrupt();
+        transport.close();
+        releasePending();
+    }
+
+    private void releasePending() {
+        SharedFrame pending = pendingSnapshot.getAndSet(null);
+        if (pending != null) pending.release();
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// สถิติฝั่ง client เก็บตลอดไม่ว่า overlay จะเปิดอยู่หรือไม่ (F3 เปิด/ปิด overlay, F4 dump ลงไฟล์แนบ bug report)
+// ใช้แยกว่ากระตุกเพราะ network (jitter/RTT), server (STATE มาไม่สม่ำเสมอ) หรือเครื่องวาดไม่ทัน (paint)
+public final class ClientMetrics {
+    // เขียนโดย EDT
+    static final PerfSampler frameInterval = new PerfSampler();   // ระยะห่างระหว่าง paint
+    static final PerfSampler paintTime = new PerfSampler();
+    // เขียนโดย receiver thread
+    static final PerfSampler snapshotGap = new PerfSampler();     // ระยะห่างระหว่าง STATE ที่ได้รับ
+    static final LongAdder bytesIn = new LongAdder();
+    static final LongAdder bytesOut = new LongAdder();
+
+    static volatile int entitiesDrawn;
+    static volatile long rttMillis = -1;
+
+    private static long lastPaintNanos, lastSnapshotNanos;
+    private static long rateWindowStart = System.nanoTime(), lastIn, lastOut;
+    private static volatile double inPerSec, outPerSec;
+
+    private ClientMetrics() {}
+
+    // EDT: ต้นเฟรม คืนเวลาเริ่มไว้ส่งให้ paintEnd
+    static long paintStart() {
+        long now = System.nanoTime();
+        if (lastPaintNanos != 0) frameInterval.record(now - lastPaintNanos);
+        lastPaintNanos = now;
+        if (now - rateWindowStart >= 1_000_000_000L) updateRates(now);
+        return now;
+    }
+
+    static void paintEnd(long start, int entities) {
+        paintTime.record(System.nanoTime() - start);
+        entitiesDrawn = entities;
+    }
+
+    // receiver thread
+    static void snapshotReceived() {
+        long now = System.nanoTime();
+        if (lastSnapshotNanos != 0) snapshotGap.record(now - lastSnapshotNanos);
+        lastSnapshotNanos = now;
+    }
+
+    private static void updateRates(long now) {
+        double secs = (now - rateWindowStart) / 1e9;
+        long in = bytesIn.sum(), out = bytesOut.sum();
+        inPerSec = (in - lastIn) / secs;
+        outPerSec = (out - lastOut) / secs;
+        lastIn = in;
+        lastOut = out;
+        rateWindowStart = now;
+    }
+
+    // บรรทัดที่ overlay แสดง (เรียกจาก EDT ตอนเปิด overlay เท่านั้น)
+    static String[] summary() {
+        Runtime rt = Runtime.getRuntime();
+        long usedMb = (rt.totalMemory() - rt.freeMemory()) >> 20;
+        double meanFrame = frameInterval.mean();
+        return new String[] {
+                String.format(Locale.ROOT, "FPS %.0f  frame p50/p95/p99 %.1f/%.1f/%.1f ms",
+                        meanFrame > 0 ? 1e9 / meanFrame : 0, ms(frameInterval.percentile(0.5)),
+                        ms(frameInterval.percentile(0.95)), ms(frameInterval.percentile(0.99))),
+                String.format(Locale.ROOT, "paint p50/p99 %.2f/%.2f ms  entities %d",
+                        ms(paintTime.percentile(0.5)), ms(paintTime.percentile(0.99)), entitiesDrawn),
+                String.format(Locale.ROOT, "snapshot gap p50/p99 %.0f/%.0f ms  jitter %.0f ms  RTT %s",
+                        ms(snapshotGap.percentile(0.5)), ms(snapshotGap.percentile(0.99)),
+                        ms(snapshotGap.percentile(0.95) - snapshotGap.percentile(0.5)),
+                        rttMillis < 0 ? "-" : rttMillis + " ms"),
+                String.format(Locale.ROOT, "net in %.1f KB/s  out %.1f KB/s", inPerSec / 1024, outPerSec / 1024),
+                String.format(Locale.ROOT, "heap %d / %d MB", usedMb, rt.maxMemory() >> 20),
+        };
+    }
+
+    // สรุป + ค่าดิบทั้งหมดลงไฟล์ perf-<เวลา>.txt ใน working directory คืน path ที่เขียน
+    static Path dump() throws IOException {
+        Path file = Path.of("perf-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt");
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file))) {
+            w.println("# " + LocalDateTime.now() + "  java " + System.getProperty("java.version")
+                    + "  " + System.getProperty("os.name") + "  cpus " + Runtime.getRuntime().availableProcessors());
+            for (String line : summary()) w.println(line);
+            dumpSamples(w, "frame_interval_ns", frameInterval);
+            dumpSamples(w, "paint_ns", paintTime);
+            dumpSamples(w, "snapshot_gap_ns", snapshotGap);
+        }
+        return file.toAbsolutePath();
+    }
+
+    private static void dumpSamples(PrintWriter w, String name, PerfSampler s) {
+        w.print(name);
+        for (long v : s.toArray()) w.print(" " + v);
+        w.println();
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+}
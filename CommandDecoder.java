@@ -0,0 +1,136 @@
+import java.nio.charset.StandardCharsets;
+
+// แปลงบรรทัดคำสั่งจาก client (bytes ใน buffer ของ BoundedLineReader) ลง slot ของ CommandQueue ตรงๆ
+// ไม่สร้าง String / ไม่ split / ไม่ parseInt บน substring: ตัวเลขอ่านจาก bytes ทิศ (facing) ใช้ String คงที่
+// ต่อคำสั่งจึงไม่มี garbage เลย (MOVE มาถึง 20-60 ครั้ง/วินาที/คน) ใช้จาก network thread ของแต่ละ connection
+final class CommandDecoder {
+    // ค่าที่เก็บลง PlayerState.facingDirection ใช้ object เดิมเสมอ
+    static final String[] FACINGS = {"LEFT", "RIGHT", "UP", "DOWN"};
+    private static final byte[][] FACING_BYTES = new byte[FACINGS.length][];
+    static {
+        for (int i = 0; i < FACINGS.length; i++) FACING_BYTES[i] = bytes(FACINGS[i]);
+    }
+
+    private static final byte[] MOVE = bytes("MOVE:");
+    private static final byte[] READY = bytes("READY");
+    private static final byte[] ATTACK = bytes("ATTACK");
+    private static final byte[] ACK = bytes("ACK:");
+    private static final byte[] PONG = bytes("PONG:");
+    private static final byte[] TRUE = bytes("true");
+
+    // ตำแหน่งอ่านถัดไปของ parseInt/parseLong (ใช้ภายใน decode ครั้งเดียว thread เดียว)
+    private int pos;
+
+    // บรรทัดที่รูปแบบผิดถูกทิ้งเงียบๆ เหมือนเดิม
+    void decode(byte[] line, int len, String player, ClientConnection conn, CommandQueue commands) {
+        if (len == 0) return;
+        switch (line[0]) {
+            case 'M' -> {
+                // MOVE:<x>:<y>:<facing>:<moving>
+                if (!startsWith(line, len, MOVE)) return;
+                pos = MOVE.length;
+                int x = parseInt(line, len);
+                if (x == Integer.MIN_VALUE || !skip(line, len, ':')) return;
+                int y = parseInt(line, len);
+                if (y == Integer.MIN_VALUE || !skip(line, len, ':')) return;
+                String facing = parseFacing(line, len);
+                if (facing == null || !skip(line, len, ':')) return;
+                boolean moving = equalsIgnoreCase(line, pos, fieldEnd(line, len), TRUE);
+                commands.offer(GameCommand.MOVE, player, x, y, 0, moving, facing, null);
+            }
+            case 'R' -> {
+                if (equals(line, len, READY)) commands.put(GameCommand.READY, player, null, null);
+            }
+            case 'A' -> {
+                if (equals(line, len, ATTACK)) {
+                    commands.offer(GameCommand.ATTACK, player);
+                } else if (startsWith(line, len, ACK)) {
+                    pos = ACK.length;
+                    int seq = parseInt(line, len);
+                    if (seq != Integer.MIN_VALUE && pos == len) {
+                        commands.offer(GameCommand.ACK, player, 0, 0, seq, false, null, null);
+                    }
+                }
+            }
+            case 'P' -> {
+                // วัด RTT ตรงนี้เลย ไม่ต้องผ่านคิว
+                if (!startsWith(line, len, PONG)) return;
+                pos = PONG.length;
+                long sent = parseLong(line, len);
+                if (sent != Long.MIN_VALUE && pos == len) conn.onPong(sent);
+            }
+            default -> { }
+        }
+    }
+
+    // ตัวเลขฐานสิบ (มีเครื่องหมายลบได้) ตั้งแต่ pos ถึงก่อน ':' / ท้ายบรรทัด คืน MIN_VALUE ถ้าไม่ใช่ตัวเลข
+    private int parseInt(byte[] line, int len) {
+        long v = parseLong(line, len);
+        return v < Integer.MIN_VALUE || v > Integer.MAX_VALUE ? Integer.MIN_VALUE : (int) v;
+    }
+
+    private long parseLong(byte[] line, int len) {
+        int i = pos;
+        boolean negative = i < len && line[i] == '-';
+        if (negative) i++;
+        int start = i;
+        long v = 0;
+        while (i < len && line[i] != ':') {
+            int d = line[i] - '0';
+            if (d < 0 || d > 9 || i - start >= 18) return Long.MIN_VALUE;
+            v = v * 10 + d;
+            i++;
+        }
+        if (i == start) return Long.MIN_VALUE;
+        pos = i;
+        return negative ? -v : v;
+    }
+
+    private String parseFacing(byte[] line, int len) {
+        int end = fieldEnd(line, len);
+        for (int f = 0; f < FACING_BYTES.length; f++) {
+            if (equalsIgnoreCase(line, pos, end, FACING_BYTES[f])) {
+                pos = end;
+                return FACINGS[f];
+            }
+        }
+        return null;
+    }
+
+    private boolean skip(byte[] line, int len, char c) {
+        if (pos >= len || line[pos] != c) return false;
+        pos++;
+        return true;
+    }
+
+    private int fieldEnd(byte[] line, int len) {
+        int i = pos;
+        while (i < len && line[i] != ':') i++;
+        return i;
+    }
+
+    private static boolean startsWith(byte[] line, int len, byte[] prefix) {
+        if (len < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] line, int len, byte[] word) {
+        return len == word.length && startsWith(line, len, word);
+    }
+
+    // word เป็นตัวพิมพ์ใหญ่/เล็กตามที่เก็บไว้ เทียบแบบไม่สนตัวพิมพ์ (ASCII)
+    private static boolean equalsIgnoreCase(byte[] line, int from, int to, byte[] word) {
+        if (to - from != word.length) return false;
+        for (int i = 0; i < word.length; i++) {
+            if ((line[from + i] | 0x20) != (word[i] | 0x20)) return false;
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
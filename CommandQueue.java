@@ -0,0 +1,94 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Ring buffer แบบ lock-free: หลาย network thread ใส่คำสั่ง (multi-producer)
+// simulation thread ตัวเดียวดึงออกทุก tick (single-consumer)
+// slot แต่ละช่องมี sequence number บอกว่าว่างหรือมีข้อมูลพร้อมอ่าน
+public class CommandQueue {
+    private final GameCommand[] slots;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // ใช้โดย consumer เท่านั้น
+
+    public CommandQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new GameCommand[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new GameCommand();
+            sequences.set(i, i);
+        }
+    }
+
+    // คืน slot ที่จองไว้ให้ producer เขียน หรือ -1 ถ้าคิวเต็ม
+    private long claim() {
+        while (true) {
+            long pos = tail.get();
+            long seq = sequences.get((int) (pos & mask));
+            long diff = seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) return pos;
+            } else if (diff < 0) {
+                return -1;
+            }
+            // producer อื่นแย่งไปแล้ว ลองใหม่
+        }
+    }
+
+    // ใส่คำสั่ง ถ้าคิวเต็มจะคืน false (ใช้กับ MOVE / ATTACK ที่ทิ้งได้)
+    public boolean offer(int opcode, String playerName, int x, int y, int index,
+                         boolean moving, String text, Object ref) {
+        long pos = claim();
+        if (pos < 0) return false;
+        int idx = (int) (pos & mask);
+        GameCommand c = slots[idx];
+        c.opcode = opcode;
+        c.playerName = playerName;
+        c.x = x;
+        c.y = y;
+        c.index = index;
+        c.moving = moving;
+        c.text = text;
+        c.ref = ref;
+        sequences.lazySet(idx, pos + 1); // publish ให้ consumer เห็น
+        return true;
+    }
+
+    public boolean offer(int opcode, String playerName) {
+        return offer(opcode, playerName, 0, 0, 0, false, null, null);
+    }
+
+    // สำหรับ JOIN / LEAVE ที่ห้ามหาย: รอจนกว่าจะมีที่ว่าง
+    public void put(int opcode, String playerName, String text, Object ref) {
+        while (!offer(opcode, playerName, 0, 0, 0, false, text, ref)) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    // เรียกจาก simulation thread เท่านั้น
+    public int drain(Consumer<GameCommand> handler, int max) {
+        int n = 0;
+        while (n < max) {
+            int idx = (int) (head & mask);
+            if (sequences.get(idx) != head + 1) break;
+            GameCommand c = slots[idx];
+            try {
+                handler.accept(c);
+            } finally {
+                c.clear();
+                sequences.lazySet(idx, head + capacity); // คืน slot ให้ producer
+                head++;
+            }
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,63 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
+
+// ของที่วางอยู่บนพื้นฝั่ง client (ดาบ, ยา) ตาม id จาก server ใช้วาดอย่างเดียว การเก็บตัดสินที่ server
+public class DroppedItem {
+    private static BufferedImage swordImg;
+    private static boolean imagesLoaded = false;
+
+    private final int id;
+    private final ItemType type;
+    private int x, y;
+    private final int W = 40, H = 40;
+
+    public DroppedItem(int id, ItemType type, int x, int y) {
+        this.id = id;
+        this.type = type;
+        this.x = x; this.y = y;
+        loadImages();
+    }
+
+    // รูปใช้ร่วมกันทุกชิ้น โหลดครั้งเดียว
+    private static synchronized void loadImages() {
+        if (imagesLoaded) return;
+        imagesLoaded = true;
+        try {
+            var s = DroppedItem.class.getResourceAsStream("/assets/player/Sword.png");
+            if (s != null) {
+                swordImg = ImageIO.read(s);
+            }
+        } catch (Exception ignored) {}
+    }
+
+    public void draw(Graphics g) {
+        if (type == ItemType.HEALTH) {
+            g.setColor(Color.WHITE);
+            g.fillRoundRect(x + 6, y + 6, W - 12, H - 12, 8, 8);
+            g.setColor(new Color(220, 30, 30));
+            g.fillRect(x + W / 2 - 4, y + 10, 8, H - 20);
+            g.fillRect(x + 10, y + H / 2 - 4, W - 20, 8);
+        } else if (swordImg != null) {
+            g.drawImage(swordImg, x, y, W, H, null);
+        } else {
+            g.setColor(new Color(255, 215, 0));
+            int[] xs = {x+W/2, x+W, x+W/2, x};
+            int[] ys = {y, y+H/2, y+H, y+H/2};
+            g.fillPolygon(xs, ys, 4);
+            g.setColor(new Color(255,255,0,80));
+            g.fillOval(x-6, y-6, W+12, H+12);
+        }
+    }
+
+    // อัปเดตจาก server คืน true ถ้ามีอะไรเปลี่ยน (ต้องวาด layer นิ่งใหม่)
+    public boolean sync(int x, int y) {
+        if (this.x == x && this.y == y) return false;
+        this.x = x;
+        this.y = y;
+        return true;
+    }
+
+    public int getId() { return id; }
+    public ItemType getType() { return type; }
+}
@@ -0,0 +1,81 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// ช่อง event แบบ reliable ของผู้เล่นหนึ่งคน: EVT:<seq>:<ชนิด>:<ข้อมูล> seq เรียงต่อกันตลอด session
+// เก็บไว้จนกว่า client ส่ง ACK:<seq> กลับมา (ACK แบบสะสม: ได้ถึง seq นี้แล้วทั้งหมด)
+// หลุดอยู่ก็ยังเก็บ พอ resume แล้วส่งที่ค้างซ้ำให้หมด / ค้างนานเกิน RETRANSMIT_MS ก็ส่งซ้ำ (client ทิ้งตัวซ้ำเองจาก seq)
+// ใช้จาก simulation thread เท่านั้น
+final class EventChannel {
+    static final long RETRANSMIT_MS = 2_000;
+    static final int MAX_UNACKED = 1024;   // เกินนี้แปลว่า client ไม่ ACK เลย
+
+    private static final class Pending {
+        final long seq;
+        final String line;
+        long sentAt;
+
+        Pending(long seq, String line, long sentAt) {
+            this.seq = seq;
+            this.line = line;
+            this.sentAt = sentAt;
+        }
+    }
+
+    private final ArrayDeque<Pending> unacked = new ArrayDeque<>();
+    private long nextSeq = 1;
+
+    // conn == null (หลุดอยู่) ก็เก็บไว้ส่งตอน resume
+    void send(ClientConnection conn, String event, long now) {
+        if (unacked.size() >= MAX_UNACKED) {
+            unacked.pollFirst();
+            ServerMetrics.eventsDropped.increment();
+        }
+        Pending e = new Pending(nextSeq, "EVT:" + nextSeq + ":" + event, now);
+        nextSeq++;
+        unacked.addLast(e);
+        if (conn != null) conn.send(e.line);
+        ServerMetrics.eventsSent.increment();
+    }
+
+    void ack(long seq) {
+        while (!unacked.isEmpty() && unacked.peekFirst().seq <= seq) unacked.pollFirst();
+    }
+
+    // all = true ตอน resume (connection ใหม่ไม่เคยได้อะไรเลย) ไม่งั้นส่งซ้ำเฉพาะที่ค้างนานเกิน
+    void retransmit(ClientConnection conn, long now, boolean all) {
+        if (conn == null) return;
+        for (Pending e : unacked) {
+            if (!all && now - e.sentAt < RETRANSMIT_MS) break; // เรียงตามเวลาส่งอยู่แล้ว
+            conn.send(e.line);
+            e.sentAt = now;
+            ServerMetrics.eventsRetransmitted.increment();
+        }
+    }
+
+    int pending() {
+        return unacked.size();
+    }
+
+    // ลง checkpoint: seq ถัดไป + ตัวที่ยังไม่ ACK
+    void writeTo(ByteBuffer out) {
+        out.putLong(nextSeq);
+        out.putInt(unacked.size());
+        for (Pending e : unacked) {
+            out.putLong(e.seq);
+            Checkpoint.putString(out, e.line);
+        }
+    }
+
+    // ต่อจาก checkpoint บน server ตัวใหม่: event ที่เกิดหลัง checkpoint หายไปพร้อม state ของมัน
+    // แต่ client อาจได้ seq พวกนั้นไปแล้ว จึงกระโดด seq ข้ามไป MAX_UNACKED ไม่งั้นตัวใหม่จะถูกทิ้งว่าซ้ำ
+    void readFrom(ByteBuffer in) {
+        long saved = in.getLong();
+        int count = in.getInt();
+        unacked.clear();
+        for (int i = 0; i < count; i++) {
+            long seq = in.getLong();
+            unacked.addLast(new Pending(seq, Checkpoint.getString(in), 0));
+        }
+        nextSeq = saved + MAX_UNACKED;
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// ตัวอ่านข้อความจาก server ฝั่ง client
+// ปกติอ่านทีละบรรทัด หลังได้ COMPRESS:DEFLATE จะเปลี่ยนเป็นโหมด frame:
+//   [4 byte header: bit บนสุด = บีบอัด, ที่เหลือ = ความยาว][payload]
+// payload ที่บีบอัดใช้ Inflater ตัวเดียวตลอด connection (dictionary ต่อเนื่องข้าม frame)
+public class FrameReader implements Closeable {
+    public static final String COMPRESS_DEFLATE = "COMPRESS:DEFLATE";
+    static final int COMPRESSED_FLAG = 0x80000000;
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private final DataInputStream in;
+    private Inflater inflater;
+    private byte[] frame = new byte[4096];
+    private byte[] line = new byte[4096];
+
+    public FrameReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    public void enableCompression() {
+        if (inflater == null) inflater = new Inflater(true);
+    }
+
+    // คืน null เมื่อ server ปิดการเชื่อมต่อ
+    public String readLine() throws IOException {
+        return inflater == null ? readPlainLine() : readFramedLine();
+    }
+
+    // มีข้อมูลค้างอยู่แล้ว readLine ครั้งถัดไปไม่ต้องรอ network
+    public boolean ready() throws IOException {
+        return in.available() > 0;
+    }
+
+    private String readPlainLine() throws IOException {
+        int len = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                return len == 0 ? null : decode(line, len);
+            }
+            if (b == '\n') break;
+            if (len == line.length) line = grow(line, len + 1);
+            line[len++] = (byte) b;
+        }
+        ClientMetrics.bytesIn.add(len + 1);
+        if (len > 0 && line[len - 1] == '\r') len--;
+        return decode(line, len);
+    }
+
+    private String readFramedLine() throws IOException {
+        int header;
+        try {
+            header = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        boolean compressed = (header & COMPRESSED_FLAG) != 0;
+        int size = header & ~COMPRESSED_FLAG;
+        if (size > MAX_FRAME) throw new IOException("Frame too large: " + size);
+        if (frame.length < size) frame = grow(frame, size);
+        in.readFully(frame, 0, size);
+        ClientMetrics.bytesIn.add(4 + size);
+
+        if (!compressed) {
+            return decode(frame, size - 1); // ตัด '\n' ท้าย frame
+        }
+
+        inflater.setInput(frame, 0, size);
+        int len = 0;
+        try {
+            while (true) {
+                if (len == line.length) line = grow(line, len + 1);
+                int n = inflater.inflate(line, len, line.length - len);
+                len += n;
+                if (n == 0 && inflater.needsInput()) break;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame", e);
+        }
+        return decode(line, len - 1);
+    }
+
+    private static byte[] grow(byte[] buf, int min) {
+        byte[] bigger = new byte[Math.max(min, buf.length * 2)];
+        System.arraycopy(buf, 0, bigger, 0, buf.length);
+        return bigger;
+    }
+
+    private static String decode(byte[] b, int len) {
+        return new String(b, 0, Math.max(0, len), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) inflater.end();
+        in.close();
+    }
+}
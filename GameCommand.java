@@ -0,0 +1,28 @@
+// คำสั่งจาก client ที่ถูก decode แล้ว รอให้ simulation thread นำไปใช้
+// object พวกนี้ถูกสร้างครั้งเดียวใน CommandQueue แล้ววนใช้ซ้ำ ห้ามเก็บ reference ไว้หลัง drain
+public class GameCommand {
+    public static final int JOIN = 1;
+    public static final int LEAVE = 2;
+    public static final int MOVE = 3;
+    public static final int READY = 4;
+    public static final int ATTACK = 6;
+    public static final int RESUME = 7;
+    public static final int ACK = 8;
+
+    public int opcode;
+    public String playerName;
+    public int x, y;
+    public int index;     // seq ล่าสุดที่ client ได้รับ (ACK)
+    public boolean moving;
+    public String text;   // facingDirection (MOVE), characterId (JOIN) หรือ session token (RESUME)
+    public Object ref;    // ClientConnection ของ client (JOIN / LEAVE / RESUME)
+
+    void clear() {
+        opcode = 0;
+        playerName = null;
+        x = y = index = 0;
+        moving = false;
+        text = null;
+        ref = null;
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.*;
+
+// JFR event ของเกม: ตอนไม่มี recording JIT ตัด new/begin/commit ทิ้งเกือบหมด เปิดทิ้งไว้บน production ได้
+// ดูใน JDK Mission Control หมวด "Game" คู่กับ GC / thread ของ JVM ในช่วงเวลาเดียวกัน
+//
+//   java -Dgame.jfr=true Server                 -> เริ่ม recording ต่อเนื่องชื่อ "game" ตั้งแต่ boot
+//   java -Dgame.jfr=/tmp/node.jfr Server        -> แบบเดียวกัน แล้ว dump ลงไฟล์นี้ตอนปิด
+//   jcmd <pid> JFR.dump name=game filename=x.jfr -> ดึงจาก node ที่รันอยู่
+final class GameEvents {
+    private static final String RECORDING_NAME = "game";
+
+    private GameEvents() {}
+
+    @Name("game.ServerTick")
+    @Label("Server Tick")
+    @Category({"Game", "Server"})
+    @StackTrace(false)
+    static final class ServerTick extends Event {
+        @Label("Tick") long tick;
+        @Label("Commands") @Timespan long commandsNanos;
+        @Label("Matches") @Timespan long matchesNanos;
+        @Label("Lobby") @Timespan long lobbyNanos;
+        @Label("Maintenance") @Timespan long maintenanceNanos;
+        @Label("Live Matches") int matches;
+        @Label("Players") int players;
+    }
+
+    @Name("game.SnapshotEncode")
+    @Label("Snapshot Encode")
+    @Category({"Game", "Server"})
+    @StackTrace(false)
+    static final class SnapshotEncode extends Event {
+        @Label("Bytes") @DataAmount int bytes;
+        @Label("Entities") int entities;
+        @Label("Recipients") int recipients;
+    }
+
+    @Name("game.Command")
+    @Label("Command")
+    @Category({"Game", "Server"})
+    @StackTrace(false)
+    static final class Command extends Event {
+        @Label("Opcode") int opcode;
+        @Label("Player") String player;
+    }
+
+    @Name("game.MessageApply")
+    @Label("Server Message Apply")
+    @Category({"Game", "Client"})
+    @StackTrace(false)
+    static final class MessageApply extends Event {
+        @Label("Kind") String kind;
+        @Label("Length") @DataAmount int length;
+    }
+
+    @Name("game.FramePaint")
+    @Label("Frame Paint")
+    @Category({"Game", "Client"})
+    @StackTrace(false)
+    static final class FramePaint extends Event {
+        @Label("Players Drawn") int players;
+        @Label("Static Layer Redrawn") boolean staticLayerRedrawn;
+    }
+
+    // -Dgame.jfr=<true|ไฟล์> เริ่ม recording แบบ continuous (เก็บบน disk ย้อนหลัง game.jfr.maxAge นาที)
+    static void startRecordingIfRequested() {
+        String target = System.getProperty("game.jfr");
+        if (target == null || target.equals("false")) return;
+        try {
+            Recording r = new Recording(Configuration.getConfiguration("default"));
+            r.setName(RECORDING_NAME);
+            r.setToDisk(true);
+            r.setMaxAge(Duration.ofMinutes(Long.getLong("game.jfr.maxAge", 30)));
+            if (!target.equals("true")) {
+                r.setDestination(Path.of(target)); // JVM dump ให้เองตอนปิด
+                r.setDumpOnExit(true);
+            }
+            r.start();
+            System.out.println("🎥 JFR recording '" + RECORDING_NAME + "' started"
+                    + (target.equals("true") ? "" : " -> " + target));
+        } catch (IOException | ParseException | IllegalStateException e) {
+            System.err.println("⚠ Could not start JFR recording: " + e.getMessage());
+        }
+    }
+}
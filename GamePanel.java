@@ -2,18 +2,25 @@ import javax.swing.*;
 import javax.swing.Timer;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class GamePanel extends JPanel implements KeyListener {
     private Image background;
     private JButton backButton;
     private Client client;
     private Player localPlayer;
-    private final Map<String, Player> allPlayers = new ConcurrentHashMap<>();
-    private final List<Sword> swords = new CopyOnWriteArrayList<>();
+    // โลกที่วาด: แตะจาก EDT เท่านั้น ข้อมูลจาก server มาเป็น WorldFrame ผ่าน pendingFrame
+    private final Map<String, Player> allPlayers = new HashMap<>();
+    private final Map<Integer, DroppedItem> items = new HashMap<>();   // id จาก server -> ของบนพื้น
+    private List<Point> graves = List.of();
+    private final AtomicReference<WorldFrame> pendingFrame = new AtomicReference<>();
+    // receiver thread เท่านั้น: frame ล่าสุดที่ decode (ไว้ต่อหลุมศพ) และอยู่ในห้องแล้วหรือยัง
+    private WorldFrame decoded = WorldFrame.EMPTY;
+    private boolean decodedInMatch = false;
     private Timer gameTimer;
     private Timer networkTimer;
     private int lastSentX = -1, lastSentY = -1;
@@ -21,14 +28,22 @@ public class GamePanel extends JPanel implements KeyListener {
     private boolean lastSentMoving = false;
     private final int groundTopY = 200;
     private final int groundBottomY = 520;
-    private boolean gameStarted = false;
+    private boolean gameStarted = false;   // EDT
     private boolean gameOver = false;
     private boolean isSpectator = false;
     private final List<String> rankings = new ArrayList<>();
     private final Map<String, String> characterMap = new HashMap<>(); // playerName -> characterId
     private JButton readyButton;
-    private final List<Point> graves = new ArrayList<>();
+    // layer นิ่ง: พื้นหลัง + หลุมศพ + ของที่วางอยู่ วาดรวมครั้งเดียวลง VolatileImage (หรือ BufferedImage) แล้ว blit ทุกเฟรม
+    // วาดใหม่เมื่อ list พวกนั้นเปลี่ยน (staticLayerDirty) หรือสลับ lobby/ในเกมเท่านั้น
+    private Image staticLayer;
+    private boolean staticLayerDirty = true;
+    private boolean staticLayerInGame;
     private Image graveImage;
+    private volatile long rttMillis = -1;
+    private volatile long jitterMillis = 0;
+    private volatile int queuePosition = 0, queueSize = 0;
+    private boolean perfOverlay = false;   // F3
 
     public GamePanel() {
         var url = getClass().getResource("/assets/background.png");
@@ -82,8 +97,7 @@ public class GamePanel extends JPanel implements KeyListener {
         });
 
         gameTimer = new Timer(1000 / 60, e -> {
-            updateLocalPlayerMovement();
-            for (Player p : allPlayers.values()) p.update();
+            advanceFrame();
             repaint();
         });
         gameTimer.start();
@@ -104,13 +118,27 @@ public class GamePanel extends JPanel implements KeyListener {
         });
     }
 
+    // ผู้ชม: ไม่มีตัวละครของตัวเอง ไม่ส่งอะไรกลับไป แค่วาด STATE ที่ relay ส่งมา
+    public void setSpectator(boolean spectator) {
+        this.isSpectator = spectator;
+        readyButton.setVisible(!spectator);
+    }
+
     public void setLocalPlayer(String name, String spritePath) {
         this.localPlayer = new Player(name, spritePath, true);
         allPlayers.put(name, this.localPlayer);
         SwingUtilities.invokeLater(this::requestFocusInWindow);
     }
 
+    // EDT: งานก่อนวาดหนึ่งเฟรม (timer เรียกทุก 1/60 วินาที RenderBench เรียกตรงๆ)
+    void advanceFrame() {
+        applyPendingFrame();
+        updateLocalPlayerMovement();
+        for (Player p : allPlayers.values()) p.update();
+    }
+
     private void updateLocalPlayerMovement() {
+        if (isSpectator) return;
         if (localPlayer == null) {
             System.out.println("⚠ localPlayer == null (ไม่พบผู้เล่นควบคุม)");
             return;
@@ -124,16 +152,7 @@ public class GamePanel extends JPanel implements KeyListener {
         if (localPlayer != null && gameStarted && !gameOver && !isSpectator) {
             localPlayer.updateMovement(getWidth(), getHeight());
             localPlayer.clampToGround(groundTopY, groundBottomY, getWidth());
-
-            if (!localPlayer.hasSword()) {
-                for (int i = 0; i < swords.size(); i++) {
-                    Sword sword = swords.get(i);
-                    if (!sword.isPickedUp() && sword.isInRange(localPlayer.getX(), localPlayer.getY())) {
-                        if (client != null) client.sendMessage("PICKUP_SWORD:" + i);
-                        break;
-                    }
-                }
-            }
+            // เดินทับของแล้ว server เก็บให้เองตอน tick ไม่ต้องส่งคำขอ
         }
     }
 
@@ -155,104 +174,53 @@ public class GamePanel extends JPanel implements KeyListener {
     }
 
     public void processServerMessage(String message) {
+        GameEvents.MessageApply event = new GameEvents.MessageApply();
+        event.begin();
+        applyServerMessage(message);
+        if (event.shouldCommit()) {
+            int end = 0;
+            while (end < message.length() && message.charAt(end) != ':' && message.charAt(end) != '|') end++;
+            event.kind = message.substring(0, end);
+            event.length = message.length();
+            event.commit();
+        }
+    }
+
+    // receiver thread: decode เท่านั้น ของที่ EDT วาดส่งไปเป็น WorldFrame ก้อนเดียว ส่วนอื่นส่งไปทำบน EDT
+    private void applyServerMessage(String message) {
         try {
             if (message.startsWith("STATE")) {
-                if (gameOver) return;
-                String[] stateParts = message.split("\\|");
-                String playerData = stateParts[0];
-
-                String[] playerTokens = playerData.split(":");
-                Set<String> activePlayerNames = new HashSet<>();
-                for (int i = 1; i < playerTokens.length; i++) {
-                    String[] pData = playerTokens[i].split(",");
-                    if (pData.length < 10) continue; // guard
-
-                    String name = pData[0];
-                    activePlayerNames.add(name);
-
-                    String charId = pData[5];
-                    characterMap.put(name, charId);
-
-                    Player p = allPlayers.computeIfAbsent(
-                            name,
-                            n -> new Player(n, "/assets/" + charId + "/", localPlayer != null && n.equals(localPlayer.getName()))
-                    );
-
-                    p.syncFromServer(
-                            Integer.parseInt(pData[1]),
-                            Integer.parseInt(pData[2]),
-                            Integer.parseInt(pData[3]),
-                            Boolean.parseBoolean(pData[4]),
-                            Boolean.parseBoolean(pData[6]),
-                            Boolean.parseBoolean(pData[7]),
-                            pData[8], // actionState
-                            pData[9]  // facingDirection
-                    );
-                }
-                allPlayers.keySet().retainAll(activePlayerNames);
-                repaint();
-
-                if (stateParts.length > 1 && stateParts[1].startsWith("SWORDS")) {
-                    String[] swordTokens = stateParts[1].split(":");
-                    int swordCount = swordTokens.length - 1;
-
-                    // ถ้ายังไม่มีให้สร้างครั้งเดียว
-                    while (swords.size() < swordCount) {
-                        swords.add(new Sword(0, 0)); // placeholder
-                    }
-
-                    // อัปเดตค่าจาก server
-                    for (int i = 1; i <= swordCount; i++) {
-                        String[] sData = swordTokens[i].split(",");
-                        if (sData.length < 3) continue;
-
-                        int x = Integer.parseInt(sData[0]);
-                        int y = Integer.parseInt(sData[1]);
-                        boolean pickedUp = Boolean.parseBoolean(sData[2]);
-
-                        Sword sword = swords.get(i - 1);
-                        sword.setPosition(x, y);
-                        sword.setPickedUp(pickedUp);
-                    }
-
-                    // ถ้ามีเกิน (server ลดจำนวนดาบ)
-                    while (swords.size() > swordCount) {
-                        swords.remove(swords.size() - 1);
-                    }
-                }
-
-                graves.clear();
-                if (stateParts.length > 2 && stateParts[2].startsWith("GRAVES")) {
-                    String[] graveTokens = stateParts[2].split(":");
-                    for (int i = 1; i < graveTokens.length; i++) {
-                        String[] gData = graveTokens[i].split(",");
-                        if (gData.length < 2) continue;
-                        int x = Integer.parseInt(gData[0]);
-                        int y = Integer.parseInt(gData[1]);
-                        graves.add(new Point(x, y));
-                    }
-                }
+                ClientMetrics.snapshotReceived();
+                publish(WorldFrame.fromState(message, decoded.graves));
+            } else if (message.startsWith("PSTATE")) {
+                ClientMetrics.snapshotReceived();
+                publish(WorldFrame.fromPartial(message, decoded));
+            } else if (message.startsWith("LOBBY:")) {
+                // LOBBY:<ready>:<ลำดับในคิว>:<จำนวนในคิว>
+                String[] parts = message.split(":");
+                boolean ready = Boolean.parseBoolean(parts[1]);
+                queuePosition = Integer.parseInt(parts[2]);
+                queueSize = Integer.parseInt(parts[3]);
+                SwingUtilities.invokeLater(() -> {
+                    if (localPlayer != null) localPlayer.setReady(ready);
+                });
+            } else if (message.startsWith("NET:")) {
+                String[] parts = message.split(":");
+                rttMillis = Long.parseLong(parts[1]);
+                jitterMillis = Long.parseLong(parts[2]);
+                ClientMetrics.rttMillis = rttMillis;
+            } else if (message.startsWith("EVT:")) {
+                handleEvent(message);
             } else if (message.equals("START_GAME")) {
-                gameStarted = true;
-                gameOver = false;
-                isSpectator = false;
-                rankings.clear();
-                repaint();
+                // resume กลางเกมได้ START_GAME ซ้ำ: หลุมศพที่ได้ไปแล้วไม่มาอีก ห้ามล้าง
+                if (!decodedInMatch) publish(decoded.withGraves(List.of()));
+                decodedInMatch = true;
+                SwingUtilities.invokeLater(this::startGame);
             } else if (message.startsWith("WINNER:")) {
+                decodedInMatch = false;
+                publish(decoded.withGraves(List.of()));
                 String[] parts = message.split(":");
-                String winnerName = parts.length >= 2 ? parts[1] : "NO ONE";
-
-                rankings.clear();
-                if (parts.length > 2 && parts[2] != null && !parts[2].isEmpty()) {
-                    rankings.addAll(Arrays.asList(parts[2].split(",")));
-                } else if (!winnerName.equalsIgnoreCase("NO ONE")) {
-                    rankings.add(winnerName);
-                }
-
-                gameOver = true;
-                gameStarted = false;
-
-                client.showGameOverScreen(new ArrayList<>(rankings), new HashMap<>(characterMap));
+                SwingUtilities.invokeLater(() -> showWinner(parts));
             }
         } catch (Exception ex) {
             System.err.println("Error processing message: " + message);
@@ -260,21 +228,184 @@ public class GamePanel extends JPanel implements KeyListener {
         }
     }
 
+    // receiver thread: frame ที่ยังไม่ถูกวาดถูกแทนได้เลย EDT สนใจแค่ตัวล่าสุด
+    private void publish(WorldFrame frame) {
+        decoded = frame;
+        pendingFrame.set(frame);
+    }
+
+    // EVT:<seq>:<ชนิด>:<ข้อมูล> มาครั้งเดียว (Client กรองตัวซ้ำแล้ว) ชนิดที่ยังไม่มีเอฟเฟกต์ก็ข้ามไป
+    private void handleEvent(String message) {
+        String[] parts = message.split(":");
+        if (parts.length < 3) return;
+        if (parts[2].equals("GRAVE_ADDED") && parts.length >= 5) {
+            publish(decoded.withGrave(new Point(Integer.parseInt(parts[3]), Integer.parseInt(parts[4]))));
+        }
+    }
+
+    private void startGame() {
+        gameStarted = true;
+        gameOver = false;
+        rankings.clear();
+    }
+
+    private void showWinner(String[] parts) {
+        String winnerName = parts.length >= 2 ? parts[1] : "NO ONE";
+
+        rankings.clear();
+        if (parts.length > 2 && parts[2] != null && !parts[2].isEmpty()) {
+            rankings.addAll(Arrays.asList(parts[2].split(",")));
+        } else if (!winnerName.equalsIgnoreCase("NO ONE")) {
+            rankings.add(winnerName);
+        }
+
+        gameOver = true;
+        gameStarted = false;
+
+        client.showGameOverScreen(new ArrayList<>(rankings), new HashMap<>(characterMap));
+    }
+
+    // EDT: เอา frame ล่าสุด (ถ้ามี) มาใช้กับ Player / ของบนพื้น ก่อน update + วาดเฟรมนี้
+    private void applyPendingFrame() {
+        WorldFrame frame = pendingFrame.getAndSet(null);
+        if (frame == null || gameOver) return;
+
+        Set<String> activePlayerNames = new HashSet<>();
+        for (WorldFrame.PlayerView v : frame.players) {
+            activePlayerNames.add(v.name);
+            characterMap.put(v.name, v.characterId);
+            Player p = allPlayers.computeIfAbsent(
+                    v.name,
+                    n -> new Player(n, "/assets/" + v.characterId + "/", localPlayer != null && n.equals(localPlayer.getName()))
+            );
+            p.syncFromServer(v.x, v.y, v.hp, v.hasSword, v.alive, v.ready, v.actionState, v.facing);
+        }
+        allPlayers.keySet().retainAll(activePlayerNames);
+        // lobby STATE แสดงแค่บางคน ตัวเราต้องอยู่เสมอ
+        if (localPlayer != null) allPlayers.putIfAbsent(localPlayer.getName(), localPlayer);
+
+        // เฉพาะของที่วางอยู่บนพื้น ไม่อยู่ใน list = ถูกเก็บ/หายไปแล้ว
+        Set<Integer> seen = new HashSet<>();
+        boolean itemsChanged = false;
+        for (WorldFrame.ItemView v : frame.items) {
+            seen.add(v.id);
+            DroppedItem item = items.get(v.id);
+            if (item == null || item.getType() != v.type) { // id เริ่มใหม่ทุกห้อง
+                items.put(v.id, new DroppedItem(v.id, v.type, v.x, v.y));
+                itemsChanged = true;
+            } else {
+                itemsChanged |= item.sync(v.x, v.y);
+            }
+        }
+        itemsChanged |= items.keySet().retainAll(seen);
+        if (itemsChanged || frame.graves != graves) staticLayerDirty = true;
+        graves = frame.graves;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
+        long paintStart = ClientMetrics.paintStart();
+        GameEvents.FramePaint event = new GameEvents.FramePaint();
+        event.begin();
+        boolean staticRedraw = staticLayerDirty;
         super.paintComponent(g);
-        if (background != null) g.drawImage(background, 0, 0, getWidth(), getHeight(), this);
+        drawStaticLayer(g);
         if (!gameStarted) {
             drawLobby(g);
         } else {
             readyButton.setVisible(false);
             if (backButton != null) backButton.setVisible(true);
+            for (Player p : allPlayers.values()) if (p.isAlive()) p.draw(g);
+        }
+        if (isSpectator) {
+            g.setFont(new Font("Arial", Font.BOLD, 16));
+            g.setColor(Color.WHITE);
+            g.drawString("👀 SPECTATING", 360, 30);
+        }
+        drawNetworkHud(g);
+        if (perfOverlay) drawPerfOverlay(g);
+        ClientMetrics.paintEnd(paintStart, (gameStarted ? allPlayers.size() : 0) + items.size() + graves.size());
+        if (event.shouldCommit()) {
+            event.players = gameStarted ? allPlayers.size() : 0;
+            event.staticLayerRedrawn = staticRedraw;
+            event.commit();
+        }
+    }
 
-            if (graveImage != null) {
-                for (Point p : graves) g.drawImage(graveImage, p.x, p.y, 64, 64, null);
+    private void drawStaticLayer(Graphics g) {
+        int w = getWidth(), h = getHeight();
+        boolean inGame = gameStarted;
+        // layer ที่สร้างตอนยังไม่ขึ้นจอเป็น BufferedImage พอขึ้นจอแล้วเปลี่ยนไปใช้ VolatileImage
+        if (staticLayer == null || staticLayer.getWidth(null) != w || staticLayer.getHeight(null) != h
+                || (!(staticLayer instanceof VolatileImage) && isDisplayable())) {
+            staticLayer = w > 0 && h > 0 ? createStaticLayer(w, h) : null;
+            staticLayerDirty = true;
+        }
+        if (staticLayer == null) return; // ขนาด 0 ไม่มีอะไรให้วาด
+        if (!(staticLayer instanceof VolatileImage volatileLayer)) {
+            refreshStaticLayer(w, h, inGame);
+            g.drawImage(staticLayer, 0, 0, null);
+            return;
+        }
+        do {
+            int status = volatileLayer.validate(getGraphicsConfiguration());
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                staticLayer = volatileLayer = createVolatileImage(w, h);
+                staticLayerDirty = true;
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                staticLayerDirty = true; // VRAM หาย (เช่นสลับจอ) ต้องวาดใหม่
             }
-            for (Sword s : swords) s.draw(g);
-            for (Player p : allPlayers.values()) if (p.isAlive()) p.draw(g);
+            refreshStaticLayer(w, h, inGame);
+            g.drawImage(volatileLayer, 0, 0, null);
+        } while (volatileLayer.contentsLost());
+    }
+
+    // ยังไม่ขึ้นจอ / headless ไม่มี VolatileImage ใช้ BufferedImage แทน ทุกทางจึงผ่าน cache เดียวกัน
+    private Image createStaticLayer(int w, int h) {
+        VolatileImage image = createVolatileImage(w, h);
+        if (image != null) return image;
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        return gc != null ? gc.createCompatibleImage(w, h) : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private void refreshStaticLayer(int w, int h, boolean inGame) {
+        if (!staticLayerDirty && staticLayerInGame == inGame) return;
+        staticLayerDirty = false;
+        staticLayerInGame = inGame;
+        Graphics lg = staticLayer.getGraphics();
+        renderStaticLayer(lg, w, h, inGame);
+        lg.dispose();
+    }
+
+    private void renderStaticLayer(Graphics g, int w, int h, boolean inGame) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, w, h);
+        if (background != null) g.drawImage(background, 0, 0, w, h, this);
+        if (!inGame) return;
+        if (graveImage != null) {
+            for (Point p : graves) g.drawImage(graveImage, p.x, p.y, 64, 64, null);
+        }
+        for (DroppedItem item : items.values()) item.draw(g);
+    }
+
+    private void drawNetworkHud(Graphics g) {
+        if (rttMillis < 0) return;
+        String text = "Ping " + rttMillis + " ms  ±" + jitterMillis;
+        g.setFont(new Font("Arial", Font.BOLD, 12));
+        g.setColor(rttMillis < 100 ? Color.GREEN : (rttMillis < 250 ? Color.YELLOW : Color.RED));
+        g.drawString(text, getWidth() - g.getFontMetrics().stringWidth(text) - 10, 20);
+    }
+
+    private void drawPerfOverlay(Graphics g) {
+        String[] lines = ClientMetrics.summary();
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        int lineHeight = g.getFontMetrics().getHeight();
+        int top = 50;
+        g.setColor(new Color(0, 0, 0, 170));
+        g.fillRect(10, top, 420, lines.length * lineHeight + 10);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 16, top + 4 + (i + 1) * lineHeight - 3);
         }
     }
 
@@ -289,12 +420,18 @@ public class GamePanel extends JPanel implements KeyListener {
         g.setFont(new Font("Arial", Font.PLAIN, 20));
         if (localPlayer != null && allPlayers.get(localPlayer.getName()) != null) {
             for (Player p : allPlayers.values()) {
+                if (yPos > 420) break; // เต็มกล่องแล้ว
                 String status = p.isReady() ? " [READY]" : " [Not Ready]";
                 g.setColor(p.isReady() ? Color.GREEN : Color.YELLOW);
                 g.drawString(p.getName() + status, 200, yPos);
                 yPos += 40;
             }
 
+            if (localPlayer.isReady() && queuePosition > 0) {
+                g.setColor(Color.CYAN);
+                g.drawString("Finding match... #" + queuePosition + " of " + queueSize + " in queue", 200, 470);
+            }
+
             if (localPlayer.isReady()) {
                 readyButton.setText("CANCEL");
                 readyButton.setBackground(Color.ORANGE);
@@ -303,12 +440,24 @@ public class GamePanel extends JPanel implements KeyListener {
                 readyButton.setBackground(Color.CYAN);
             }
         }
-        readyButton.setVisible(true);
+        readyButton.setVisible(!isSpectator);
         if (backButton != null) backButton.setVisible(false);
     }
 
     @Override public void keyPressed(KeyEvent e) {
         System.out.println("🔹 Key pressed: " + e.getKeyChar());
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            perfOverlay = !perfOverlay;
+            return;
+        }
+        if (e.getKeyCode() == KeyEvent.VK_F4) {
+            try {
+                System.out.println("📝 Perf dump written to " + ClientMetrics.dump());
+            } catch (java.io.IOException ex) {
+                System.err.println("❌ Perf dump failed: " + ex.getMessage());
+            }
+            return;
+        }
         if (localPlayer == null || !gameStarted || gameOver || isSpectator) return;
         switch (e.getKeyCode()) {
             case KeyEvent.VK_A, KeyEvent.VK_LEFT -> localPlayer.setMovingLeft(true);
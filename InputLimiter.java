@@ -0,0 +1,61 @@
+// จำกัดอัตราคำสั่งขาเข้าของ client หนึ่งคน: token bucket แยกตามประเภทคำสั่ง
+// เช็กจากตัวอักษรแรกก่อน parse ทิ้งได้ถูกๆ client ที่โดนทิ้งบ่อยเกิน (strike หมด) ถูกตัดการเชื่อมต่อ
+// ใช้จาก network thread ของ connection นั้นคนเดียว
+final class InputLimiter {
+    enum Kind {
+        MOVE(30, 30),      // client ส่ง MOVE อย่างมาก 20 ครั้ง/วินาที
+        ATTACK(8, 8),
+        PONG(3, 5),
+        ACK(40, 60),       // ACK สะสม ตัวที่ถูกทิ้ง ตัวถัดไปครอบคลุมให้ จึงไม่นับเป็น strike
+        CONTROL(2, 5),     // READY และอื่นๆ
+        STRIKE(5, 50);     // ถูกทิ้งได้ 50 ครั้งติด แล้วคืนให้ 5 ครั้ง/วินาที
+
+        final long costNanos, capacityNanos;
+
+        Kind(int perSecond, int burst) {
+            this.costNanos = 1_000_000_000L / perSecond;
+            this.capacityNanos = costNanos * burst;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    // เครดิตของแต่ละ bucket เป็นหน่วย ns (เวลาที่ผ่านไป = เครดิตที่ได้คืน)
+    private final long[] credit = new long[KINDS.length];
+    private final long[] last = new long[KINDS.length];
+
+    InputLimiter() {
+        long now = System.nanoTime();
+        for (Kind k : KINDS) {
+            credit[k.ordinal()] = k.capacityNanos;
+            last[k.ordinal()] = now;
+        }
+    }
+
+    // บรรทัดดิบจาก BoundedLineReader.readLineBytes (ยังไม่ decode)
+    static Kind classify(byte[] line, int len) {
+        if (len == 0) return Kind.CONTROL;
+        return switch (line[0]) {
+            case 'M' -> Kind.MOVE;
+            case 'A' -> len > 1 && line[1] == 'C' ? Kind.ACK : Kind.ATTACK;
+            case 'P' -> Kind.PONG;
+            default -> Kind.CONTROL;
+        };
+    }
+
+    boolean allow(Kind k, long now) {
+        int i = k.ordinal();
+        long c = Math.min(k.capacityNanos, credit[i] + (now - last[i]));
+        last[i] = now;
+        if (c < k.costNanos) {
+            credit[i] = c;
+            return false;
+        }
+        credit[i] = c - k.costNanos;
+        return true;
+    }
+
+    // นับการละเมิด คืน true ถ้าเกินขีดแล้ว ควรตัดทิ้ง
+    boolean strike(long now) {
+        return !allow(Kind.STRIKE, now);
+    }
+}
@@ -0,0 +1,14 @@
+// ของหนึ่งชิ้นในห้อง (ดาบ, ยา ...) id คงที่ตั้งแต่เกิดจนหายไป
+// object ถูกวนใช้ผ่าน pool ของ ItemSystem ห้ามเก็บ reference ไว้หลัง despawn
+public class ItemState {
+    public int id;
+    public ItemType type;
+    public int x, y;
+    public boolean onGround;
+    public String ownerName;   // ดาบที่มีคนถืออยู่
+    int cell = -1;             // ช่องใน grid ของ ItemSystem (-1 = ไม่ได้วางบนพื้น)
+
+    // จุดกึ่งกลางของรูป (รูปของ 40x40)
+    int centerX() { return x + 20; }
+    int centerY() { return y + 20; }
+}
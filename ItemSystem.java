@@ -0,0 +1,137 @@
+import java.util.*;
+
+// ของทั้งหมดในห้องหนึ่งห้อง: id คงที่, object วนใช้จาก pool, ของบนพื้นอยู่ใน grid ช่องละ CELL px
+// หาของใกล้ตัวผู้เล่นดูแค่ช่องรอบๆ ไม่ต้องไล่ทุกชิ้น ของเป็นร้อยชิ้นต่อห้องก็ไม่หนัก
+// ใช้จาก simulation thread เท่านั้น ลำดับทุกอย่างคงที่ (ไม่มี hash ของ object) เพื่อให้ replay ได้ผลเดิม
+public class ItemSystem {
+    static final int CELL = 64;
+    static final int WORLD_W = 832, WORLD_H = 640;   // เลยขอบจอ 800x600 นิดหน่อย เกินนี้ถูกหนีบเข้าช่องริม
+    private static final int COLS = WORLD_W / CELL, ROWS = WORLD_H / CELL;
+
+    private final List<List<ItemState>> grid = new ArrayList<>(COLS * ROWS);
+    private final Map<Integer, ItemState> live = new LinkedHashMap<>();   // id -> ของที่ยังอยู่ (บนพื้นหรือถูกถือ)
+    private final ArrayDeque<ItemState> pool = new ArrayDeque<>();
+    private int nextId = 1;
+
+    ItemSystem() {
+        for (int i = 0; i < COLS * ROWS; i++) grid.add(new ArrayList<>(4));
+    }
+
+    ItemState spawn(ItemType type, int x, int y) {
+        ItemState it = pool.poll();
+        if (it == null) it = new ItemState();
+        it.id = nextId++;
+        it.type = type;
+        it.ownerName = null;
+        live.put(it.id, it);
+        drop(it, x, y);
+        return it;
+    }
+
+    void despawn(ItemState it) {
+        unlink(it);
+        live.remove(it.id);
+        it.ownerName = null;
+        it.type = null;
+        pool.push(it);
+    }
+
+    // วางลงพื้นที่ (x, y) (ของที่ถูกถืออยู่ก็ใช้ได้)
+    void drop(ItemState it, int x, int y) {
+        unlink(it);
+        it.x = x;
+        it.y = y;
+        it.ownerName = null;
+        it.onGround = true;
+        it.cell = cellOf(it.centerX(), it.centerY());
+        grid.get(it.cell).add(it);
+    }
+
+    // มีคนหยิบไป: ออกจาก grid แต่ยังมี id อยู่
+    void take(ItemState it, String owner) {
+        unlink(it);
+        it.onGround = false;
+        it.ownerName = owner;
+    }
+
+    ItemState heldBy(String owner, ItemType type) {
+        for (ItemState it : live.values()) {
+            if (it.type == type && owner.equals(it.ownerName)) return it;
+        }
+        return null;
+    }
+
+    // ของชนิด type บนพื้นที่กึ่งกลางอยู่ห่าง (cx, cy) ไม่เกิน range ชิ้นที่ใกล้สุด (เท่ากันเอา id น้อย)
+    ItemState nearest(int cx, int cy, int range, ItemType type) {
+        int c0 = clamp((cx - range) / CELL, COLS), c1 = clamp((cx + range) / CELL, COLS);
+        int r0 = clamp((cy - range) / CELL, ROWS), r1 = clamp((cy + range) / CELL, ROWS);
+        ItemState best = null;
+        long bestDist = (long) range * range;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                for (ItemState it : grid.get(r * COLS + c)) {
+                    if (it.type != type) continue;
+                    long dx = it.centerX() - cx, dy = it.centerY() - cy;
+                    long d = dx * dx + dy * dy;
+                    if (d < bestDist || (d == bestDist && (best == null || it.id < best.id))) {
+                        bestDist = d;
+                        best = it;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    int countOnGround(ItemType type) {
+        int n = 0;
+        for (ItemState it : live.values()) {
+            if (it.onGround && it.type == type) n++;
+        }
+        return n;
+    }
+
+    Collection<ItemState> all() {
+        return live.values();
+    }
+
+    int nextId() {
+        return nextId;
+    }
+
+    // ต่อจาก checkpoint: ใส่ของกลับด้วย id เดิม ตามลำดับเดิม
+    void restore(int id, ItemType type, int x, int y, boolean onGround, String owner) {
+        ItemState it = new ItemState();
+        it.id = id;
+        it.type = type;
+        live.put(id, it);
+        if (onGround) {
+            drop(it, x, y);
+        } else {
+            it.x = x;
+            it.y = y;
+            take(it, owner);
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    void restoreNextId(int id) {
+        nextId = Math.max(nextId, id);
+    }
+
+    private void unlink(ItemState it) {
+        if (it.cell >= 0) {
+            grid.get(it.cell).remove(it);
+            it.cell = -1;
+        }
+        it.onGround = false;
+    }
+
+    private static int cellOf(int x, int y) {
+        return clamp(y / CELL, ROWS) * COLS + clamp(x / CELL, COLS);
+    }
+
+    private static int clamp(int v, int n) {
+        return v < 0 ? 0 : (v >= n ? n - 1 : v);
+    }
+}
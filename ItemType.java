@@ -0,0 +1,16 @@
+// ชนิดของที่วางในสนาม code คือตัวอักษรที่ส่งใน STATE (|ITEMS:<id>,<code>,<x>,<y>)
+public enum ItemType {
+    SWORD('S'),
+    HEALTH('H');
+
+    public final char code;
+
+    ItemType(char code) { this.code = code; }
+
+    public static ItemType fromCode(char c) {
+        for (ItemType t : values()) {
+            if (t.code == c) return t;
+        }
+        return null;
+    }
+}
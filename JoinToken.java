@@ -0,0 +1,47 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// token ที่ MatchRouter ออกให้ client ตอนส่งต่อไปยัง game node
+// รูปแบบ: <หมดอายุ ms>.<HMAC-SHA256 ของ host:port:หมดอายุ> เซ็นด้วย secret ที่ router และ node ใช้ร่วมกัน
+public final class JoinToken {
+    static final String SECRET = System.getProperty("game.cluster.secret", "dev-cluster-secret");
+    private static final long TTL_MS = 30_000;
+
+    private JoinToken() {}
+
+    public static String issue(String host, int port) {
+        long expires = System.currentTimeMillis() + TTL_MS;
+        return expires + "." + sign(host + ":" + port + ":" + expires);
+    }
+
+    public static boolean verify(String token, String host, int port) {
+        if (token == null) return false;
+        int dot = token.indexOf('.');
+        if (dot <= 0) return false;
+        long expires;
+        try {
+            expires = Long.parseLong(token.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis()) return false;
+        byte[] expected = sign(host + ":" + port + ":" + expires).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static String sign(String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] sig = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sig);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
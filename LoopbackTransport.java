@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Transport ใน JVM เดียวกัน: สองฝั่งต่อกันด้วย Pipe สองเส้น (ทิศละเส้น) ไม่มี socket ไม่ผ่าน kernel
+// แต่ละ write กลายเป็น byte[] หนึ่งก้อนในคิว lock-free ฝั่งอ่านหยิบไปทีละก้อน ไม่มีใครถือ lock
+// ของที่ค้างในท่อจำกัดไว้ที่ CAPACITY เหมือน send buffer ของ TCP: คนเขียนรอจนอีกฝั่งอ่านออกไป
+// (writer ของ ClientConnection จึงยังวัด bandwidth / ตัด client ที่ค้างได้เหมือนเดิม)
+final class LoopbackTransport implements Transport {
+    private static final long CAPACITY = 256 * 1024;
+    private static final long WRITER_PARK_NANOS = 100_000;
+
+    // ทิศเดียว: คนเขียนกี่ thread ก็ได้ คนอ่าน thread เดียว
+    private static final class Pipe {
+        final ConcurrentLinkedQueue<byte[]> chunks = new ConcurrentLinkedQueue<>();
+        final AtomicLong buffered = new AtomicLong();
+        volatile Thread reader;
+        volatile boolean closed;
+        // ใช้โดยคนอ่านเท่านั้น
+        byte[] current;
+        int pos;
+
+        void write(byte[] chunk) throws IOException {
+            while (buffered.get() > CAPACITY && !closed) {
+                LockSupport.parkNanos(WRITER_PARK_NANOS);
+                if (Thread.interrupted()) throw new InterruptedIOException();
+            }
+            if (closed) throw new IOException("Connection closed");
+            buffered.addAndGet(chunk.length);
+            chunks.offer(chunk);
+            LockSupport.unpark(reader);
+        }
+
+        int read(byte[] dst, int off, int len, long timeoutNanos) throws IOException {
+            if (len == 0) return 0;
+            if (current == null && !take(timeoutNanos)) return -1;
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, dst, off, n);
+            pos += n;
+            if (pos == current.length) {
+                buffered.addAndGet(-current.length);
+                current = null;
+            }
+            return n;
+        }
+
+        // รอจนมีก้อนใหม่ คืน false ถ้าท่อปิดและไม่มีอะไรค้างแล้ว (EOF)
+        private boolean take(long timeoutNanos) throws IOException {
+            long deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+            reader = Thread.currentThread();
+            try {
+                while (true) {
+                    // ตั้ง reader ก่อน poll: ก้อนที่เข้ามาหลัง poll ว่างจะ unpark เราเสมอ
+                    byte[] chunk = chunks.poll();
+                    if (chunk != null) {
+                        current = chunk;
+                        pos = 0;
+                        return true;
+                    }
+                    if (closed) return false;
+                    if (deadline == 0) {
+                        LockSupport.park(this);
+                    } else {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0) throw new SocketTimeoutException("Read timed out");
+                        LockSupport.parkNanos(this, left);
+                    }
+                    if (Thread.interrupted()) throw new InterruptedIOException();
+                }
+            } finally {
+                reader = null;
+            }
+        }
+
+        void close() {
+            closed = true;
+            LockSupport.unpark(reader);
+        }
+    }
+
+    private final Pipe in, out;
+    private final LoopbackTransport peer;
+    private volatile long readTimeoutNanos;
+
+    private final InputStream input = new InputStream() {
+        private final byte[] one = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len, readTimeoutNanos);
+        }
+
+        @Override
+        public void close() {
+            LoopbackTransport.this.close();
+        }
+    };
+
+    private final OutputStream output = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            out.write(new byte[] { (byte) b });
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return;
+            byte[] chunk = new byte[len];
+            System.arraycopy(b, off, chunk, 0, len);
+            out.write(chunk);
+        }
+
+        @Override
+        public void close() {
+            LoopbackTransport.this.close();
+        }
+    };
+
+    private LoopbackTransport(Pipe in, Pipe out, LoopbackTransport peer) {
+        this.in = in;
+        this.out = out;
+        this.peer = peer != null ? peer : new LoopbackTransport(out, in, this);
+    }
+
+    // คืนฝั่ง client ฝั่ง server ได้จาก peer()
+    static LoopbackTransport open() {
+        return new LoopbackTransport(new Pipe(), new Pipe(), null);
+    }
+
+    LoopbackTransport peer() {
+        return peer;
+    }
+
+    @Override
+    public InputStream input() {
+        return input;
+    }
+
+    @Override
+    public OutputStream output() {
+        return output;
+    }
+
+    // ทุก buffer รวมเป็นก้อนเดียว (copy ครั้งเดียว) เขียนครบเสมอ
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        int total = 0;
+        for (int i = offset; i < offset + length; i++) total += srcs[i].remaining();
+        if (total == 0) return 0;
+        byte[] chunk = new byte[total];
+        int at = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int n = srcs[i].remaining();
+            srcs[i].get(chunk, at, n);
+            at += n;
+        }
+        out.write(chunk);
+        return total;
+    }
+
+    @Override
+    public void setReadTimeout(int millis) {
+        readTimeoutNanos = millis * 1_000_000L;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !out.closed;
+    }
+
+    // ปิดทั้งสองทิศ: อีกฝั่งอ่านของที่ค้างจนหมดแล้วได้ EOF เขียนต่อได้ IOException
+    @Override
+    public void close() {
+        in.close();
+        out.close();
+    }
+
+    @Override
+    public String toString() {
+        return "loopback@" + Integer.toHexString(System.identityHashCode(this));
+    }
+}
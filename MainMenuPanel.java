@@ -22,14 +22,19 @@ public class MainMenuPanel extends JPanel {
         join.addActionListener(e -> onJoin());
         add(join);
 
+        JButton watch = styled("WATCH");
+        watch.setBounds(325, 320, 150, 50);
+        watch.addActionListener(e -> onWatch());
+        add(watch);
+
         JButton set = styled("SETTING");
-        set.setBounds(325, 320, 150, 50);
+        set.setBounds(325, 390, 150, 50);
         set.addActionListener(e -> JOptionPane.showMessageDialog(this,
                 "Sound: ON\nMusic: ON\nDifficulty: Normal", "Settings", JOptionPane.INFORMATION_MESSAGE));
         add(set);
 
         JButton cred = styled("CREDIT");
-        cred.setBounds(325, 390, 150, 50);
+        cred.setBounds(325, 460, 150, 50);
         cred.addActionListener(e -> JOptionPane.showMessageDialog(this,
                 "PvP Fighting Game\nDeveloped by: You!\n© 2025", "Credits", JOptionPane.INFORMATION_MESSAGE));
         add(cred);
@@ -51,7 +56,7 @@ public class MainMenuPanel extends JPanel {
 
     private void onJoin() {
         String serverIp = JOptionPane.showInputDialog(this,
-                "Enter Server IP (default: localhost):", "localhost");
+                "Enter Server or Router address (host[:port], \"local\" = in-process server):", client.getServerIp());
         if (serverIp == null || serverIp.isEmpty()) serverIp = "localhost";
 
         client.setServerIp(serverIp);
@@ -59,6 +64,14 @@ public class MainMenuPanel extends JPanel {
         client.showCharacterSelection(defaultName);
     }
 
+    private void onWatch() {
+        String relay = JOptionPane.showInputDialog(this,
+                "Enter Spectator Relay address (host[:port], default: localhost:12400):", "localhost:12400");
+        if (relay == null) return;
+        if (relay.isEmpty()) relay = "localhost:12400";
+        client.attemptSpectate(relay);
+    }
+
     @Override protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         if (background != null)
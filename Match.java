@@ -0,0 +1,231 @@
+import java.util.*;
+
+// ห้องแข่งหนึ่งห้องที่ Matchmaker สร้างขึ้น: ตัวกติกาอยู่ใน MatchSimulation ส่วนนี้ดูแลการส่งข้อมูลให้ผู้เล่น/ผู้ชม
+// ทุกอย่างในนี้ถูกเรียกจาก simulation thread เท่านั้น
+public class Match {
+    final int id;
+    final MatchSimulation sim;
+    final Map<String, PlayerState> players;
+    private final StringBuilder stateBuilder = new StringBuilder(1024);
+    private final StringBuilder eventBuilder = new StringBuilder(64);
+    // STATE บางส่วนของผู้รับที่ bandwidth ไม่พอ (สร้างทีละคน)
+    private final StringBuilder partialBuilder = new StringBuilder(512);
+    private final StringBuilder partialPlayers = new StringBuilder(256);
+    private final StringBuilder partialItems = new StringBuilder(256);
+    private final StringBuilder partialMembers = new StringBuilder(128);
+    private final StringBuilder token = new StringBuilder(96);
+    private int roomEventSeq = 0;   // seq ของ EVT ที่ส่งให้ผู้ชมผ่าน relay (TCP ต่อเดียว ไม่ต้อง ACK)
+    // ต่อจาก checkpoint: EVT ที่ส่งไปหลัง checkpoint หายไปพร้อม state แต่ผู้ชมได้ seq พวกนั้นไปแล้ว กระโดดข้ามไป
+    private static final int ROOM_SEQ_JUMP = EventChannel.MAX_UNACKED;
+    final ServerMetrics.Compression compression;   // null = ห้องนี้ไม่บีบ frame
+
+    Match(int id, long seed, List<PlayerState> members) {
+        this(id, new MatchSimulation(seed, members));
+    }
+
+    // ห้องที่ sim เตรียมไว้แล้ว (ต่อจาก checkpoint) ไม่ต้อง start() ใหม่
+    Match(int id, MatchSimulation sim) {
+        this.id = id;
+        this.sim = sim;
+        this.players = sim.players;
+        this.compression = Server.COMPRESSION_ENABLED && players.size() >= Server.COMPRESS_MIN_PLAYERS
+                ? new ServerMetrics.Compression("room #" + id) : null;
+        for (PlayerState p : players.values()) {
+            p.match = this;
+            p.snapshotPriority.reset(); // id ของเริ่มใหม่ทุกห้อง
+            if (p.conn != null) p.conn.compressFor(compression);
+        }
+    }
+
+    int roomEventSeq() {
+        return roomEventSeq;
+    }
+
+    void restoreRoomEventSeq(int saved) {
+        roomEventSeq = saved + ROOM_SEQ_JUMP;
+    }
+
+    void start() {
+        sim.start();
+        broadcast("START_GAME");
+        System.out.println("🚀 MATCH #" + id + " STARTED with " + players.keySet() + " (seed " + sim.seed() + ")");
+    }
+
+    void handleAction(GameCommand c, PlayerState p) {
+        sim.apply(c, p);
+    }
+
+    void tick() {
+        sim.tick();
+        flushEvents();
+    }
+
+    // event ที่เกิดตั้งแต่ tick ก่อน (จาก apply + tick) ส่งเข้าช่อง reliable ของทุกคนในห้อง และผู้ชม
+    private void flushEvents() {
+        List<String> events = sim.events;
+        if (events.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        for (String e : events) {
+            for (PlayerState p : players.values()) p.events.send(p.conn, e, now);
+            StringBuilder sb = eventBuilder;
+            sb.setLength(0);
+            sb.append("EVT:").append(++roomEventSeq).append(':').append(e);
+            Server.publishRoom(id, sb);
+        }
+        events.clear();
+    }
+
+    // ผู้เล่นหลุดกลางเกม: ดาบที่ถืออยู่กลับมาวางใหม่
+    void removePlayer(PlayerState p) {
+        sim.removePlayer(p);
+        p.match = null;
+    }
+
+    // คืน ranking ถ้าเกมจบแล้ว (เหลือรอด <= 1) ไม่งั้นคืน null
+    List<String> checkWinner() {
+        List<String> rankingList = sim.ranking();
+        if (rankingList == null) return null;
+        String winnerName = rankingList.isEmpty() || !players.get(rankingList.get(0)).isAlive
+                ? "NO ONE" : rankingList.get(0);
+
+        // ส่งให้ทุก client ในห้อง
+        broadcast("WINNER:" + winnerName + ":" + String.join(",", rankingList));
+        System.out.println("🏆 MATCH #" + id + " OVER — WINNER: " + winnerName + " Ranking: " + rankingList);
+        return rankingList;
+    }
+
+    // จบห้อง: ปรับ skill ตามอันดับ แล้วคืนทุกคนกลับ lobby
+    void finish(List<String> ranking) {
+        sim.finish(ranking);
+        for (PlayerState p : players.values()) {
+            p.match = null;
+            if (p.conn != null) p.conn.compressFor(ServerMetrics.LOBBY_COMPRESSION);
+        }
+        broadcast("RESET_GAME");
+    }
+
+    void broadcastState() {
+        int entities = buildState();
+        Server.fanOutSnapshot(players.values(), stateBuilder, entities, this);
+    }
+
+    // PSTATE<ผู้เล่น>|ITEMS<ของ>|PLAYERS:<ชื่อ>,...|IDS:<id>,...
+    // ส่งเฉพาะ entity ที่คะแนนสูงสุดเท่าที่งบ bytes พอ ส่วนท้ายบอกว่าตอนนี้มีใครบ้าง client จะได้ลบตัวที่หายไป
+    // ตัวที่ไม่ได้ส่งใน tick นี้ client ใช้ค่าเดิมไปก่อน
+    void sendPartial(PlayerState viewer, int budget) {
+        PriorityAccumulator acc = viewer.snapshotPriority;
+        acc.begin();
+        for (PlayerState ps : players.values()) {
+            long sig = signature(ps);
+            double w = ps == viewer ? PriorityAccumulator.SELF
+                    : PriorityAccumulator.weight(ps.x - viewer.x, ps.y - viewer.y, acc.changed(ps.name, sig),
+                            ps.actionState.equals("ATTACKING"), ps.hasSword);
+            acc.add(ps.name, sig, w).player = ps;
+        }
+        for (ItemState it : sim.items.all()) {
+            if (!it.onGround) continue;
+            long sig = ((long) it.type.code << 48) ^ ((long) it.x << 24) ^ it.y;
+            double w = PriorityAccumulator.weight(it.x - viewer.x, it.y - viewer.y, acc.changed(it.id, sig),
+                    false, it.type == ItemType.SWORD);
+            acc.add(it.id, sig, w).item = it;
+        }
+        acc.finish();
+
+        // ส่วนบอกสมาชิกต้องไปทุกครั้ง หักออกจากงบก่อน
+        StringBuilder members = partialMembers;
+        members.setLength(0);
+        members.append("|PLAYERS:");
+        for (PlayerState ps : players.values()) members.append(ps.name).append(',');
+        members.append("|IDS:");
+        for (ItemState it : sim.items.all()) {
+            if (it.onGround) members.append(it.id).append(',');
+        }
+        int remaining = budget - members.length() - "PSTATE|ITEMS".length() - 1;
+
+        StringBuilder playerPart = partialPlayers, itemPart = partialItems, t = token;
+        playerPart.setLength(0);
+        itemPart.setLength(0);
+        int sent = 0;
+        for (PriorityAccumulator.Candidate c : acc.candidates) {
+            t.setLength(0);
+            if (c.player != null) {
+                Server.appendPlayer(t, c.player);
+            } else {
+                ItemState it = c.item;
+                t.append(':').append(it.id).append(',').append(it.type.code)
+                        .append(',').append(it.x).append(',').append(it.y);
+            }
+            if (t.length() > remaining && c.player != viewer) continue; // ตัวเล็กกว่าอาจยังพอ
+            remaining -= t.length();
+            (c.player != null ? playerPart : itemPart).append(t);
+            PriorityAccumulator.sent(c);
+            sent++;
+        }
+        StringBuilder sb = partialBuilder;
+        sb.setLength(0);
+        sb.append("PSTATE").append(playerPart).append("|ITEMS").append(itemPart).append(members);
+
+        GameEvents.SnapshotEncode event = new GameEvents.SnapshotEncode();
+        event.begin();
+        SharedFrame frame = SharedFrame.encodeLine(sb);
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = frame.size();
+            event.entities = sent;
+            event.recipients = 1;
+            event.commit();
+        }
+        viewer.conn.sendSnapshot(frame);
+        frame.release();
+        ServerMetrics.snapshotsPartial.increment();
+    }
+
+    private static long signature(PlayerState ps) {
+        long h = ps.x;
+        h = h * 31 + ps.y;
+        h = h * 31 + ps.hp;
+        h = h * 31 + (ps.isAlive ? 1 : 0) + (ps.hasSword ? 2 : 0) + (ps.isReady ? 4 : 0);
+        h = h * 31 + ps.actionState.hashCode();
+        return h * 31 + ps.facingDirection.hashCode();
+    }
+
+    // STATE ของห้องนี้สำหรับผู้ชม (ผ่าน relay) ใช้ stateBuilder ที่เพิ่ง build ใน broadcastState
+    void publishState() {
+        Server.publishRoom(id, stateBuilder);
+    }
+
+    // ส่ง state เต็มให้คนที่เพิ่ง resume ทันที ไม่ต้องรอ tick หน้า แล้วตามด้วย event ที่ยังไม่ได้ ACK
+    // (event ที่ ACK แล้ว client มีอยู่แล้ว เช่นหลุมศพ ไม่ต้องส่งใหม่)
+    void resync(PlayerState p) {
+        p.conn.send("START_GAME");
+        buildState();
+        SharedFrame frame = SharedFrame.encodeLine(stateBuilder);
+        p.conn.sendSnapshot(frame);
+        frame.release();
+        p.events.retransmit(p.conn, System.currentTimeMillis(), true);
+    }
+
+    // เฉพาะของที่มีชีวิตอยู่ตอนนี้ ของถาวร (หลุมศพ) มาทาง EVT ครั้งเดียว คืนจำนวน entity ใน STATE
+    private int buildState() {
+        StringBuilder sb = stateBuilder;
+        sb.setLength(0);
+        sb.append("STATE");
+        for (PlayerState ps : players.values()) {
+            Server.appendPlayer(sb, ps);
+        }
+        int entities = players.size();
+        sb.append("|ITEMS");
+        for (ItemState it : sim.items.all()) {
+            if (!it.onGround) continue;
+            sb.append(":").append(it.id).append(",").append(it.type.code)
+                    .append(",").append(it.x).append(",").append(it.y);
+            entities++;
+        }
+        return entities;
+    }
+
+    void broadcast(String msg) {
+        Server.broadcast(players.values(), msg);
+        Server.publishRoom(id, msg);
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.*;
+import java.net.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Router/directory ของ cluster: game node มาลงทะเบียนและรายงาน load
+// client ต่อมาที่ router ก่อน (ส่ง SELECT แบบเดียวกับต่อ node) แล้วได้ REDIRECT ไป node ที่ว่างที่สุด
+//
+// ทดสอบบนเครื่องเดียว:
+//   java MatchRouter 12345
+//   java -Dgame.router=localhost:12345 Server 12346
+//   java -Dgame.router=localhost:12345 Server 12347
+//   java Client   (ใส่ localhost ตามปกติ)
+public class MatchRouter {
+    private static final int DEFAULT_PORT = 12345;
+    private static final long STALE_MS = 3_000;       // ไม่ได้รายงานนานเกินนี้ถือว่าตาย
+    private static final double MIN_HEADROOM = 0.05;  // tick เต็มเกือบ 100% ไม่ส่งคนไปเพิ่ม
+
+    static class NodeInfo {
+        final String host;
+        final int port;
+        volatile int rooms, players;
+        volatile double headroom = 1.0;
+        volatile long lastReport = System.currentTimeMillis();
+        // คนที่ส่งไปแล้วแต่ node ยังไม่ได้รายงานกลับ กันไม่ให้ทุกคนกองไป node เดียว
+        volatile int pending;
+
+        NodeInfo(String host, int port) { this.host = host; this.port = port; }
+
+        String key() { return host + ":" + port; }
+
+        double score() {
+            // คนเยอะ = แย่ tick ใกล้เต็ม = แย่มาก
+            return (players + pending) * (1.0 + 4.0 * (1.0 - headroom));
+        }
+    }
+
+    private static final Map<String, NodeInfo> nodes = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        ServerSocket serverSocket = new ServerSocket(port);
+        System.out.println("🧭 Match Router running on port " + port);
+        while (true) {
+            Socket s = serverSocket.accept();
+            new Thread(() -> handle(s), "Router-" + s.getRemoteSocketAddress()).start();
+        }
+    }
+
+    private static void handle(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            String first = in.readLine();
+            if (first == null) return;
+
+            if (first.startsWith("NODE:")) {
+                NodeInfo node = parseNode(first);
+                if (node == null) {
+                    System.out.println("🚫 Rejected node hello from " + socket.getRemoteSocketAddress());
+                    return;
+                }
+                handleNode(node, in);
+            } else if (first.startsWith("SELECT:")) {
+                NodeInfo node = pickNode();
+                if (node == null) {
+                    out.println("ERROR:NO_SERVERS");
+                    return;
+                }
+                out.println("REDIRECT:" + node.host + ":" + node.port + ":" + JoinToken.issue(node.host, node.port));
+                System.out.println("➡ Routed client to " + node.key() + " (score " + String.format("%.1f", node.score()) + ")");
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    // NODE:<host>:<port>:<token> token เป็น JoinToken ของ host:port ตัวเอง (node รู้ secret เดียวกับ router)
+    // hello พังหรือ token ไม่ผ่านคืน null ไม่ให้ใครก็ได้มาลงทะเบียนแล้วดึง client ไปที่อื่น
+    private static NodeInfo parseNode(String hello) {
+        String[] parts = hello.split(":");
+        if (parts.length != 4) return null;
+        int port;
+        try {
+            port = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (port <= 0 || port > 0xFFFF || !JoinToken.verify(parts[3], parts[1], port)) return null;
+        return new NodeInfo(parts[1], port);
+    }
+
+    // หลัง hello ผ่านแล้ว node ส่ง LOAD:<rooms>:<players>:<headroom> ทุกวินาทีจนกว่าจะหลุด
+    private static void handleNode(NodeInfo node, BufferedReader in) throws IOException {
+        nodes.put(node.key(), node);
+        System.out.println("➕ Node registered: " + node.key() + " (" + nodes.size() + " nodes)");
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("LOAD:")) continue;
+                String[] l = line.split(":");
+                try {
+                    node.rooms = Integer.parseInt(l[1]);
+                    node.players = Integer.parseInt(l[2]);
+                    node.headroom = Double.parseDouble(l[3]);
+                    node.pending = 0;
+                    node.lastReport = System.currentTimeMillis();
+                } catch (RuntimeException ignored) {}
+            }
+        } finally {
+            nodes.remove(node.key(), node);
+            System.out.println("➖ Node left: " + node.key() + " (" + nodes.size() + " nodes)");
+        }
+    }
+
+    private static synchronized NodeInfo pickNode() {
+        long now = System.currentTimeMillis();
+        NodeInfo best = null;
+        for (NodeInfo n : nodes.values()) {
+            if (now - n.lastReport > STALE_MS || n.headroom < MIN_HEADROOM) continue;
+            if (best == null || n.score() < best.score()) best = n;
+        }
+        if (best != null) best.pending++;
+        return best;
+    }
+}
@@ -0,0 +1,238 @@
+import java.awt.Point;
+import java.util.*;
+
+// กติกาของเกมล้วนๆ ของห้องหนึ่งห้อง: ไม่มี socket ไม่มี thread ไม่อ่านนาฬิกา
+// รับคำสั่ง (apply) + เดินเวลา (tick) แล้วเปลี่ยน state สุ่มทุกอย่างจาก seed ของห้อง
+// seed + สมาชิก + ลำดับคำสั่งเดียวกัน = ผลเหมือนเดิมทุกครั้ง เอาไป replay หรือทดสอบกติกาได้
+// Match ใช้แบบ real time (1 tick = 50ms) ส่วน SimulationBench เรียก tick() รัวๆ ไม่ต้องรอ
+public class MatchSimulation {
+    static final int LOGIC_EVERY_TICKS = 2;    // ท่าโจมตีค้างไว้ 100ms
+    static final int PICKUP_RANGE = 50;        // กึ่งกลางตัว ถึง กึ่งกลางของ
+    static final int HEALTH_EVERY_TICKS = 200; // ยาเกิดทุก 10 วินาที
+    static final int MAX_HEALTH_ON_GROUND = 2;
+    static final int HEALTH_AMOUNT = 25;
+
+    final Map<String, PlayerState> players = new LinkedHashMap<>();
+    final ItemSystem items = new ItemSystem();
+    final List<Point> graves = new ArrayList<>();
+    final List<String> deathOrder = new ArrayList<>();
+    // เหตุการณ์ที่เกิดระหว่าง apply/tick ("ชนิด:ข้อมูล") Match เอาไปส่งผ่าน EventChannel แล้วล้างทิ้ง
+    final List<String> events = new ArrayList<>();
+    private final long seed;
+    private final Random random;
+    private long ticks = 0;
+
+    MatchSimulation(long seed, Collection<PlayerState> members) {
+        this.seed = seed;
+        this.random = new Random(seed);
+        for (PlayerState p : members) players.put(p.name, p);
+    }
+
+    long seed() { return seed; }
+    long ticks() { return ticks; }
+
+    // ต่อจาก checkpoint (ผู้เล่นกับของใส่มาแล้ว) ลำดับสุ่มต่อจากนี้ได้จาก seed + tick
+    // ไม่ตรงกับที่ห้องเดิมจะสุ่มได้ แต่ replay จาก checkpoint เดิมยังได้ผลเดิม
+    void restore(long ticks, List<Point> graves, List<String> deathOrder) {
+        this.ticks = ticks;
+        this.graves.addAll(graves);
+        this.deathOrder.addAll(deathOrder);
+        random.setSeed(seed ^ ticks);
+    }
+
+    void start() {
+        for (PlayerState p : players.values()) {
+            p.hp = 100;
+            p.isAlive = true;
+            p.hasSword = false;
+            p.isReady = true;
+            p.actionState = "IDLE";
+            p.x = 120 + random.nextInt(520);
+            p.y = 320 + random.nextInt(120);
+        }
+
+        int swordsToSpawn = Math.max(1, players.size() - 1);
+        for (int i = 0; i < swordsToSpawn; i++) {
+            int sx = 100 + random.nextInt(600);
+            int sy = 250 + random.nextInt(200);
+            items.spawn(ItemType.SWORD, sx, sy);
+        }
+    }
+
+    // ===== MODIFIED ===== รับคำสั่งที่ decode แล้วจากคิว
+    void apply(GameCommand c, PlayerState p) {
+        String name = p.name;
+
+        if (c.opcode == GameCommand.MOVE) {
+            if (!p.isAlive) return;
+            p.x = c.x;
+            p.y = c.y;
+            p.facingDirection = c.text;
+
+            if (p.actionState.equals("IDLE") || p.actionState.equals("WALKING")) {
+                p.actionState = c.moving ? "WALKING" : "IDLE";
+            }
+        } else if (c.opcode == GameCommand.ATTACK) {
+            if (p.hasSword && p.hp > 0 && p.isAlive) {
+                p.actionState = "ATTACKING";
+                boolean hitSomeone = false;
+                for (Map.Entry<String, PlayerState> e : players.entrySet()) {
+                    String otherName = e.getKey();
+                    PlayerState otherPlayer = e.getValue();
+                    if (otherName.equals(name) || !otherPlayer.isAlive) continue;
+
+                    if (Math.abs(p.x - otherPlayer.x) < 70 && Math.abs(p.y - otherPlayer.y) < 70) {
+                        otherPlayer.hp -= 25;
+                        hitSomeone = true;
+                        if (otherPlayer.hp <= 0) otherPlayer.hp = 0;
+                        events.add("HIT:" + name + ":" + otherName + ":" + otherPlayer.hp);
+                        if (otherPlayer.hp == 0) {
+                            otherPlayer.isAlive = false;
+                            graves.add(new Point(otherPlayer.x, otherPlayer.y));
+                            events.add("DEATH:" + otherName);
+                            events.add("GRAVE_ADDED:" + otherPlayer.x + ":" + otherPlayer.y);
+                            if (!deathOrder.contains(otherName)) {
+                                deathOrder.add(otherName);
+                            }
+                        }
+                        break;
+                    }
+                }
+                if (hitSomeone) {
+                    p.hasSword = false;
+                    ItemState sword = items.heldBy(name, ItemType.SWORD);
+                    if (sword != null) {
+                        int sx = 100 + random.nextInt(600);
+                        int sy = 250 + random.nextInt(200);
+                        items.drop(sword, sx, sy);
+                        events.add("SWORD_RESPAWN:" + sword.id + ":" + sx + ":" + sy);
+                    }
+                }
+            }
+        }
+    }
+
+    void tick() {
+        resolvePickups();
+        if (ticks % HEALTH_EVERY_TICKS == HEALTH_EVERY_TICKS - 1
+                && items.countOnGround(ItemType.HEALTH) < MAX_HEALTH_ON_GROUND) {
+            int hx = 100 + random.nextInt(600);
+            int hy = 250 + random.nextInt(200);
+            ItemState health = items.spawn(ItemType.HEALTH, hx, hy);
+            events.add("ITEM_SPAWN:" + health.id + ":" + health.type.code + ":" + hx + ":" + hy);
+        }
+        if (ticks % LOGIC_EVERY_TICKS == 0) {
+            for (PlayerState p : players.values()) {
+                if (p.actionState.equals("ATTACKING")) {
+                    p.actionState = "IDLE";
+                }
+            }
+        }
+        ticks++;
+    }
+
+    // เดินผ่านของแล้วเก็บเลย ตัดสินที่ server ตอน tick client ไม่ต้องขอ
+    private void resolvePickups() {
+        for (PlayerState p : players.values()) {
+            if (!p.isAlive) continue;
+            int px = p.x + 32, py = p.y + 32;
+            if (!p.hasSword) {
+                ItemState sword = items.nearest(px, py, PICKUP_RANGE, ItemType.SWORD);
+                if (sword != null) {
+                    items.take(sword, p.name);
+                    p.hasSword = true;
+                    events.add("PICKUP:" + p.name + ":" + sword.id);
+                }
+            }
+            if (p.hp < 100) {
+                ItemState health = items.nearest(px, py, PICKUP_RANGE, ItemType.HEALTH);
+                if (health != null) {
+                    p.hp = Math.min(100, p.hp + HEALTH_AMOUNT);
+                    events.add("PICKUP:" + p.name + ":" + health.id);
+                    items.despawn(health);
+                }
+            }
+        }
+    }
+
+    // ผู้เล่นออกกลางเกม: ดาบที่ถืออยู่ตกตรงที่ยืน
+    void removePlayer(PlayerState p) {
+        players.remove(p.name);
+        ItemState sword = items.heldBy(p.name, ItemType.SWORD);
+        if (sword != null) items.drop(sword, p.x + 12, p.y + 12);
+    }
+
+    // คืน ranking ถ้าเกมจบแล้ว (เหลือรอด <= 1) ไม่งั้นคืน null
+    List<String> ranking() {
+        String winnerName = null;
+        int alive = 0;
+        for (PlayerState p : players.values()) {
+            if (!p.isAlive) continue;
+            if (++alive > 1) return null;
+            winnerName = p.name;
+        }
+
+        List<String> rankingList = new ArrayList<>();
+
+        // 🥇 คนสุดท้ายรอดชีวิต
+        if (winnerName != null) {
+            rankingList.add(winnerName);
+        }
+
+        // 🥈–🥉 คนที่ตายก่อนหน้า (เรียงย้อนจาก deathOrder)
+        for (int i = deathOrder.size() - 1; i >= 0; i--) {
+            String name = deathOrder.get(i);
+            if (!rankingList.contains(name) && players.containsKey(name)) {
+                rankingList.add(name);
+            }
+        }
+
+        // กันพลาด: ใส่ชื่อที่อาจตกหล่น
+        for (String n : players.keySet()) {
+            if (!rankingList.contains(n)) {
+                rankingList.add(n);
+            }
+        }
+        return rankingList;
+    }
+
+    // จบห้อง: ปรับ skill ตามอันดับ แล้วคืนค่าทุกคนเป็นสถานะใน lobby
+    void finish(List<String> ranking) {
+        int n = ranking.size();
+        for (int i = 0; i < n; i++) {
+            PlayerState p = players.get(ranking.get(i));
+            if (p != null && n > 1) p.skill += 20 - 40 * i / (n - 1);
+        }
+
+        for (PlayerState p : players.values()) {
+            p.hp = 100;
+            p.isAlive = true;
+            p.hasSword = false;
+            p.isReady = false;
+            p.actionState = "IDLE";
+            p.facingDirection = "RIGHT";
+        }
+    }
+
+    // hash ของ state ทั้งห้อง ใช้เทียบว่า replay ด้วย seed เดิมได้ผลตรงกัน
+    long stateHash() {
+        long h = seed;
+        for (PlayerState p : players.values()) {
+            h = h * 31 + p.name.hashCode();
+            h = h * 31 + p.x;
+            h = h * 31 + p.y;
+            h = h * 31 + p.hp;
+            h = h * 31 + (p.isAlive ? 1 : 0) + (p.hasSword ? 2 : 0);
+            h = h * 31 + p.actionState.hashCode();
+        }
+        for (ItemState it : items.all()) {
+            h = h * 31 + it.id;
+            h = h * 31 + it.type.code;
+            h = h * 31 + it.x;
+            h = h * 31 + it.y;
+            h = h * 31 + (it.onGround ? 1 : 0);
+        }
+        for (Point g : graves) h = h * 31 + g.hashCode();
+        return h * 31 + ticks;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.*;
+
+// คิวหาห้อง: ผู้เล่นที่กด READY เข้าคิวตาม skill bucket แล้วทุก tick จับกลุ่มละ matchSize คนเป็นห้องใหม่
+// แต่ละ bucket เป็น LinkedHashSet: เข้า/ออก/หยิบคนที่รอนานสุด เป็น O(1) ทั้งหมด
+// คนที่รอนานเกิน relaxAfterMs จะถูกจับรวมข้าม bucket ได้ ไม่ต้องรอคนระดับเดียวกันตลอดไป
+public class Matchmaker {
+    private final int matchSize;
+    private final int bucketWidth;      // 0 = ไม่แบ่งตาม skill
+    private final long relaxAfterMs;
+    private final Map<Integer, LinkedHashSet<PlayerState>> buckets = new HashMap<>();
+    private long nextTicket = 1;
+    private int queued = 0;
+
+    public Matchmaker(int matchSize, int bucketWidth, long relaxAfterMs) {
+        this.matchSize = Math.max(2, matchSize);
+        this.bucketWidth = bucketWidth;
+        this.relaxAfterMs = relaxAfterMs;
+    }
+
+    public boolean enqueue(PlayerState p, long now) {
+        if (p.queueTicket != 0) return false;
+        p.queueTicket = nextTicket++;
+        p.queuedAt = now;
+        p.queueBucket = bucketWidth > 0 ? p.skill / bucketWidth : 0;
+        buckets.computeIfAbsent(p.queueBucket, b -> new LinkedHashSet<>()).add(p);
+        queued++;
+        return true;
+    }
+
+    public boolean remove(PlayerState p) {
+        if (p.queueTicket == 0) return false;
+        LinkedHashSet<PlayerState> bucket = buckets.get(p.queueBucket);
+        if (bucket != null && bucket.remove(p)) queued--;
+        p.queueTicket = 0;
+        return true;
+    }
+
+    public int size() {
+        return queued;
+    }
+
+    // ลำดับโดยประมาณในคิว (นับจาก ticket ของคนหน้าสุดใน bucket เดียวกัน) ไม่ต้องไล่ทั้งคิว
+    public int positionOf(PlayerState p) {
+        if (p.queueTicket == 0) return 0;
+        LinkedHashSet<PlayerState> bucket = buckets.get(p.queueBucket);
+        if (bucket == null || bucket.isEmpty()) return 0;
+        long first = bucket.iterator().next().queueTicket;
+        return (int) Math.min(bucket.size(), p.queueTicket - first + 1);
+    }
+
+    // จับกลุ่มได้สูงสุด maxMatches ห้องต่อครั้ง คนที่ถูกจับกลุ่มจะออกจากคิวแล้ว
+    public List<List<PlayerState>> formMatches(int maxMatches, long now) {
+        List<List<PlayerState>> groups = new ArrayList<>();
+        List<PlayerState> relaxed = new ArrayList<>();
+
+        for (LinkedHashSet<PlayerState> bucket : buckets.values()) {
+            while (bucket.size() >= matchSize && groups.size() < maxMatches) {
+                groups.add(take(bucket, matchSize));
+            }
+            // คนที่เหลือใน bucket และรอนานแล้ว ไปรวมกับ bucket อื่น
+            for (PlayerState p : bucket) {
+                if (now - p.queuedAt < relaxAfterMs) break; // ใน bucket เรียงตามเวลาเข้าคิวอยู่แล้ว
+                relaxed.add(p);
+            }
+        }
+
+        if (relaxed.size() >= matchSize && groups.size() < maxMatches) {
+            relaxed.sort(Comparator.comparingLong(p -> p.queueTicket));
+            for (int i = 0; i + matchSize <= relaxed.size() && groups.size() < maxMatches; i += matchSize) {
+                List<PlayerState> group = new ArrayList<>(relaxed.subList(i, i + matchSize));
+                for (PlayerState p : group) remove(p);
+                groups.add(group);
+            }
+        }
+
+        buckets.values().removeIf(Set::isEmpty);
+        return groups;
+    }
+
+    private List<PlayerState> take(LinkedHashSet<PlayerState> bucket, int n) {
+        List<PlayerState> group = new ArrayList<>(n);
+        Iterator<PlayerState> it = bucket.iterator();
+        while (group.size() < n) {
+            PlayerState p = it.next();
+            it.remove();
+            p.queueTicket = 0;
+            queued--;
+            group.add(p);
+        }
+        return group;
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.Arrays;
+
+// ring buffer ของค่าล่าสุด CAPACITY ตัว (nanos) ไว้ดู percentile: record() ไม่ allocate ไม่ lock
+// เขียนได้ thread เดียว อ่านจากอีก thread ได้ ค่าที่อ่านอาจเหลื่อมกันนิดหน่อย ซึ่งพอสำหรับใช้ดูเป็นสถิติ
+final class PerfSampler {
+    static final int CAPACITY = 512;
+
+    private final long[] ring = new long[CAPACITY];
+    private final long[] sorted = new long[CAPACITY];   // ที่ทำงานของ percentile() ใช้จาก thread ที่อ่านเท่านั้น
+    private volatile long count = 0;
+
+    void record(long value) {
+        long n = count;
+        ring[(int) (n % CAPACITY)] = value;
+        count = n + 1;
+    }
+
+    int size() {
+        return (int) Math.min(count, CAPACITY);
+    }
+
+    long last() {
+        long n = count;
+        return n == 0 ? 0 : ring[(int) ((n - 1) % CAPACITY)];
+    }
+
+    double mean() {
+        int n = size();
+        if (n == 0) return 0;
+        long sum = 0;
+        for (int i = 0; i < n; i++) sum += ring[i];
+        return sum / (double) n;
+    }
+
+    // q ระหว่าง 0..1 เช่น 0.99
+    long percentile(double q) {
+        int n = size();
+        if (n == 0) return 0;
+        System.arraycopy(ring, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        return sorted[Math.min(n - 1, (int) (q * n))];
+    }
+
+    // ค่าดิบเรียงจากเก่าไปใหม่ ใช้ตอน dump
+    long[] toArray() {
+        long n = count;
+        int size = (int) Math.min(n, CAPACITY);
+        long[] out = new long[size];
+        for (int i = 0; i < size; i++) out[i] = ring[(int) ((n - size + i) % CAPACITY)];
+        return out;
+    }
+}
@@ -1,8 +1,5 @@
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Player {
     public enum State { IDLE, WALKING, ATTACKING }
@@ -11,13 +8,12 @@ public class Player {
     private String name;
     private int x, y, hp;
     private final boolean isLocalPlayer;
-    private enum Direction { LEFT, RIGHT, UP, DOWN }
+    enum Direction { LEFT, RIGHT, UP, DOWN }
     private Direction facing = Direction.RIGHT;
 
-    private Map<String, BufferedImage[]> animations = new HashMap<>();
+    private final CharacterAnimations animations;   // แชร์กับทุก Player ที่ใช้ตัวละครเดียวกัน
     private int currentFrame = 0;
     private int animationTick = 0;
-    private int animationSpeed = 5;
 
     private int speed = 4;
     private boolean movingLeft, movingRight, movingUp, movingDown;
@@ -30,48 +26,22 @@ public class Player {
     private boolean isAlive = true;
     private boolean isReady = false;
 
+    // HUD เหนือหัว: ป้ายชื่อ render ครั้งเดียวต่อชื่อ แถบ HP ใช้รูปสำเร็จรูปตาม HP ที่ปัดเป็น HP_STEPS ขั้น + สีตามช่วง
+    // ทุกเฟรมเหลือแค่ blit 2 รูปต่อผู้เล่น (ใช้จาก EDT เท่านั้น)
+    private static final Font NAME_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final int HP_STEPS = 20;
+    private static final Color[] HP_COLORS = {Color.RED, Color.YELLOW, Color.GREEN};
+    private static final BufferedImage[][] HP_BARS = new BufferedImage[HP_COLORS.length][HP_STEPS + 1];
+    private BufferedImage nameplate;
+    private String nameplateText;
+    private int nameplateAscent;
+
     public Player(String name, String spriteBasePath, boolean isLocalPlayer) {
         this.name = name;
         this.x = 100; this.y = 400; this.hp = 100;
         this.isLocalPlayer = isLocalPlayer;
         this.targetX = x; this.targetY = y; this.smoothX = x; this.smoothY = y;
-        loadAnimations(spriteBasePath);
-    }
-
-    private void loadAnimations(String basePath) {
-        String[][] animData = {
-                {"Idle_Right",   "boy_Right",       "1"},
-                {"Idle_Left",    "boy_Left",        "1"},
-                {"Idle_Up",      "boy_up",          "1"},
-                {"Idle_Down",    "boy_down",        "1"},
-                {"Walk_Right",   "boy_Right",       "8"},
-                {"Walk_Left",    "boy_Left",        "8"},
-                {"Walk_Up",      "boy_up",          "2"},
-                {"Walk_Down",    "boy_down",        "2"},
-                {"Attack_Right", "boy_Fight_Right", "6"},
-                {"Attack_Left",  "boy_Fight_Left",  "6"}
-        };
-
-        for (String[] data : animData) {
-            String animName = data[0];
-            String folder = data[1];
-            int frameCount = Integer.parseInt(data[2]);
-            BufferedImage[] frames = new BufferedImage[frameCount];
-
-            for (int i = 0; i < frameCount; i++) {
-                String path = basePath + folder + "/" + folder + "_" + i + ".png";
-
-                try {
-                    var stream = getClass().getResourceAsStream(path);
-                    if (stream != null) {
-                        frames[i] = ImageIO.read(stream);
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Error loading sprite: " + path);
-                }
-            }
-            animations.put(animName, frames);
-        }
+        this.animations = CharacterAnimations.forCharacter(spriteBasePath);
     }
 
     public void update() {
@@ -91,18 +61,12 @@ public class Player {
             }
         }
 
-        animationTick++;
-        if (animationTick > animationSpeed) {
+        CharacterAnimations.Animation anim = animations.get(currentState, facing);
+        if (++animationTick >= anim.ticksPerFrame) {
             animationTick = 0;
             currentFrame++;
-
-            BufferedImage[] currentAnimation = animations.get(getCurrentAnimationKey());
-            if (currentAnimation == null) return;
-
-            if (currentFrame >= currentAnimation.length) {
-                if (currentState == State.ATTACKING) {
-                    currentState = State.IDLE;
-                }
+            if (currentFrame >= anim.frames.length) {
+                if (!anim.loops) currentState = State.IDLE;
                 currentFrame = 0;
             }
         }
@@ -110,37 +74,20 @@ public class Player {
 
     public void draw(Graphics g) {
         if (!isAlive) return;
-        Graphics2D g2d = (Graphics2D) g.create();
+        // ตั้ง hint บน Graphics เดิมแล้วคืนค่า แทน g.create() ทุกเฟรมทุกคน
+        Graphics2D g2d = (Graphics2D) g;
+        Object interpolation = g2d.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
         g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
 
-        BufferedImage[] currentAnimation = animations.get(getCurrentAnimationKey());
-
-        if (currentAnimation != null && currentFrame < currentAnimation.length && currentAnimation[currentFrame] != null) {
-            g2d.drawImage(currentAnimation[currentFrame], x, y, drawWidth, drawHeight, null);
+        BufferedImage[] frames = animations.get(currentState, facing).frames;
+        if (currentFrame < frames.length && frames[currentFrame] != null) {
+            g2d.drawImage(frames[currentFrame], x, y, drawWidth, drawHeight, null);
         }
 
-        g2d.dispose();
+        if (interpolation != null) g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
         drawUI(g);
     }
 
-    private String getCurrentAnimationKey() {
-        String key;
-        switch (currentState) {
-            case WALKING:   key = "Walk_";   break;
-            case ATTACKING: key = "Attack_"; break;
-            default:        key = "Idle_";   break;
-        }
-
-        String directionKey = facing.toString().substring(0, 1) + facing.toString().substring(1).toLowerCase();
-        key += directionKey;
-
-        if (!animations.containsKey(key)) {
-            String fallbackKey = "Idle_" + directionKey;
-            return fallbackKey;
-        }
-        return key;
-    }
-
     public void attack() {
         if (currentState != State.ATTACKING) {
             this.currentState = State.ATTACKING;
@@ -201,19 +148,49 @@ public class Player {
     }
 
     public void drawUI(Graphics g) {
-        g.setColor(Color.BLACK);
-        g.fillRect(x + 16, y - 12, 64, 9);
-        g.setColor(Color.DARK_GRAY);
-        g.fillRect(x + 18, y - 10, 60, 5);
-        g.setColor(hp > 30 ? Color.GREEN : (hp > 15 ? Color.YELLOW : Color.RED));
-        int hpBarWidth = (int) (60 * (hp / 100.0));
-        g.fillRect(x + 18, y - 10, Math.max(0, hpBarWidth), 5);
+        g.drawImage(hpBar(hp), x + 16, y - 12, null);
+        BufferedImage plate = nameplate();
+        g.drawImage(plate, x + (drawWidth - plate.getWidth()) / 2, y - 15 - nameplateAscent, null);
+    }
 
+    private BufferedImage nameplate() {
+        if (nameplate != null && name.equals(nameplateText)) return nameplate;
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D sg = scratch.createGraphics();
+        FontMetrics fm = sg.getFontMetrics(NAME_FONT);
+        sg.dispose();
+
+        BufferedImage img = new BufferedImage(Math.max(1, fm.stringWidth(name)), fm.getAscent() + fm.getDescent(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setFont(NAME_FONT);
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 12));
-        FontMetrics fm = g.getFontMetrics();
-        int w = fm.stringWidth(name);
-        g.drawString(name, x + (drawWidth - w)/2, y - 15);
+        g.drawString(name, 0, fm.getAscent());
+        g.dispose();
+
+        nameplate = img;
+        nameplateText = name;
+        nameplateAscent = fm.getAscent();
+        return img;
+    }
+
+    private static BufferedImage hpBar(int hp) {
+        int band = hp > 30 ? 2 : (hp > 15 ? 1 : 0);
+        int step = Math.max(0, Math.min(HP_STEPS, (hp * HP_STEPS + 50) / 100));
+        BufferedImage img = HP_BARS[band][step];
+        if (img != null) return img;
+
+        img = new BufferedImage(64, 9, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, 64, 9);
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(2, 2, 60, 5);
+        g.setColor(HP_COLORS[band]);
+        g.fillRect(2, 2, 60 * step / HP_STEPS, 5);
+        g.dispose();
+        HP_BARS[band][step] = img;
+        return img;
     }
 
     public String getFacingDirection() {
@@ -222,6 +199,7 @@ public class Player {
 
     public boolean isAlive() { return isAlive; }
     public boolean isReady() { return isReady; }
+    public void setReady(boolean ready) { this.isReady = ready; }
     public void setMovingLeft(boolean v)  { this.movingLeft = v; if(v) this.facing = Direction.LEFT; }
     public void setMovingRight(boolean v) { this.movingRight = v; if(v) this.facing = Direction.RIGHT; }
     public void setMovingUp(boolean v)    { this.movingUp = v; if(v) this.facing = Direction.UP; }
@@ -0,0 +1,28 @@
+class PlayerState {
+    int x, y, hp;
+    boolean hasSword;
+    boolean isAlive;
+    String characterId;
+    boolean isReady;
+    String actionState = "IDLE";
+    String facingDirection = "RIGHT";
+
+    // ข้อมูลฝั่ง server ของ session นี้
+    String name;
+    ClientConnection conn;       // null = หลุดอยู่ รอ resume ภายใน grace window
+    String sessionToken;
+    long disconnectedAt;
+    Match match;                 // null = อยู่ใน lobby
+    int skill = 1000;
+    long queueTicket, queuedAt;  // ticket 0 = ไม่ได้อยู่ในคิว
+    int queueBucket;
+    final EventChannel events = new EventChannel();   // อยู่กับ session ไม่ใช่ socket: resume แล้วได้ที่ค้างต่อ
+    final PriorityAccumulator snapshotPriority = new PriorityAccumulator();   // ใช้ตอน link ส่ง STATE เต็มไม่ไหว
+
+    PlayerState(int x, int y, int hp, boolean hasSword, boolean isAlive, String characterId) {
+        this.x = x; this.y = y; this.hp = hp;
+        this.hasSword = hasSword; this.isAlive = isAlive;
+        this.characterId = characterId;
+        this.isReady = false;
+    }
+}
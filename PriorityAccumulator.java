@@ -0,0 +1,89 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// คิวความสำคัญของ entity สำหรับผู้รับหนึ่งคน ใช้ตอน link ส่ง STATE เต็มไม่ไหว (ดู Match.sendPartial)
+// ทุก tick แต่ละ entity ได้คะแนนเพิ่มตามน้ำหนัก (ใกล้ตัว / เปลี่ยนไปจากที่ส่งล่าสุด / กำลังฟัน / ถือดาบ)
+// ส่งจากคะแนนมากไปน้อยจนเต็มงบ bytes ตัวที่ส่งแล้วคะแนนกลับเป็น 0 ตัวที่ไม่ได้ส่งสะสมต่อจนได้ส่งเอง
+// ใช้จาก simulation thread เท่านั้น
+final class PriorityAccumulator {
+    static final double SELF = 1e12;   // ตัวผู้รับเองต้องได้ทุกครั้ง (hp ของตัวเอง)
+    private static final double NEAR_RANGE = 600;
+
+    static final class Entry {
+        double priority;
+        long sentSignature;
+        boolean seen;
+    }
+
+    // entity หนึ่งตัวใน tick นี้ (วนใช้ object เดิม)
+    static final class Candidate {
+        Entry entry;
+        long signature;
+        PlayerState player;   // อย่างใดอย่างหนึ่ง
+        ItemState item;
+    }
+
+    private final Map<Object, Entry> entries = new HashMap<>();   // ชื่อผู้เล่น / id ของ
+    private final List<Candidate> pool = new ArrayList<>();
+    final List<Candidate> candidates = new ArrayList<>();
+
+    void reset() {
+        entries.clear();
+    }
+
+    void begin() {
+        candidates.clear();
+        for (Entry e : entries.values()) e.seen = false;
+    }
+
+    // คะแนนของ entity ที่อยู่ห่างจากผู้รับ (dx, dy)
+    static double weight(int dx, int dy, boolean changed, boolean attacking, boolean sword) {
+        double near = 1 - Math.min(Math.hypot(dx, dy), NEAR_RANGE) / NEAR_RANGE;
+        double w = 1 + 4 * near;
+        if (!changed) w *= 0.1;   // client มีค่านี้อยู่แล้ว ส่งซ้ำแค่นานๆ ครั้ง
+        if (attacking) w += 4;
+        if (sword) w += 1;
+        return w;
+    }
+
+    Candidate add(Object key, long signature, double weight) {
+        Entry e = entries.computeIfAbsent(key, k -> new Entry());
+        e.seen = true;
+        e.priority += weight;
+        Candidate c;
+        if (candidates.size() < pool.size()) {
+            c = pool.get(candidates.size());
+        } else {
+            c = new Candidate();
+            pool.add(c);
+        }
+        c.entry = e;
+        c.signature = signature;
+        c.player = null;
+        c.item = null;
+        candidates.add(c);
+        return c;
+    }
+
+    boolean changed(Object key, long signature) {
+        Entry e = entries.get(key);
+        return e == null || e.sentSignature != signature;
+    }
+
+    // เรียงคะแนนมากไปน้อย แล้วลบ entity ที่ไม่อยู่แล้ว (ของถูกเก็บ / คนออก)
+    void finish() {
+        candidates.sort((a, b) -> Double.compare(b.entry.priority, a.entry.priority));
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (!it.next().seen) it.remove();
+        }
+    }
+
+    static void sent(Candidate c) {
+        c.entry.priority = 0;
+        c.entry.sentSignature = c.signature;
+    }
+}
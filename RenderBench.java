@@ -0,0 +1,190 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.List;
+import java.util.function.IntConsumer;
+import javax.swing.SwingUtilities;
+
+// วัดเวลาวาดของ client แบบ headless ลง BufferedImage (ไม่ต้องมีจอ ไม่ต่อ server)
+// โลกสังเคราะห์ขนาด 3/32/128/512 คน มีคนตาย (หลุมศพ) ดาบ ยา ขยับทุกเฟรมผ่าน STATE ชุดที่สร้างไว้ก่อน
+// ต่อขนาดวัดแยกเป็นส่วน: decode+apply STATE, GamePanel.paintComponent ทั้งจอ, Player.draw, Player.drawUI,
+// DroppedItem.draw, GameOverPanel ทั้งจอ รายงาน percentile ของเวลาต่อเฟรม และ byte ที่ allocate ต่อเฟรม
+// ทุกส่วนรันบน EDT เหมือนของจริง (ใช้ ThreadMXBean ของ thread นั้นนับ allocation)
+// headless ไม่มี VolatileImage: layer นิ่ง (พื้นหลัง หลุมศพ ของ) cache ลง BufferedImage แทน ทาง cache จึงถูกวัดด้วย
+//
+//   java RenderBench [เฟรมที่วัด=512] [warmup=300] [ขนาด=3,32,128,512]
+//   (percentile ดูจาก PerfSampler เก็บแค่ 512 เฟรมล่าสุด)
+public class RenderBench {
+    private static final int W = 800, H = 600;
+    private static final int VARIANTS = 64;   // STATE ที่ตำแหน่งต่างกัน วนใช้ซ้ำ
+    private static final String[] STATES = {"IDLE", "WALKING", "WALKING", "ATTACKING"};
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // โลกหนึ่งขนาด: STATE ทุกแบบ + หลุมศพ (EVT) ที่ส่งครั้งเดียวตอนเริ่ม
+    private static final class World {
+        final int size;
+        final String[] states = new String[VARIANTS];
+        final List<Point> graves = new ArrayList<>();
+        int swords, potions;
+
+        World(int size) {
+            this.size = size;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : PerfSampler.CAPACITY;
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        String sizes = args.length > 2 ? args[2] : "3,32,128,512";
+
+        if (!THREADS.isThreadAllocatedMemorySupported()) System.out.println("⚠ JVM นี้นับ allocation ต่อ thread ไม่ได้");
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        for (String s : sizes.split(",")) {
+            World world = buildWorld(Integer.parseInt(s.trim()));
+            GamePanel[] panel = new GamePanel[1];
+            SwingUtilities.invokeAndWait(() -> {
+                panel[0] = new GamePanel();
+                panel[0].setSize(W, H);
+                panel[0].setLocalPlayer("Bot 1", "/assets/boy1/");
+                // startGame ต่อคิว EDT ไว้ก่อนที่ timer ของ panel จะทำงานครั้งแรก
+                panel[0].processServerMessage("START_GAME");
+            });
+            // ที่เหลือทางเดียวกับ receiver thread
+            int seq = 1;
+            for (Point g : world.graves) panel[0].processServerMessage("EVT:" + seq++ + ":GRAVE_ADDED:" + g.x + ":" + g.y);
+            panel[0].processServerMessage(world.states[0]);
+            SwingUtilities.invokeAndWait(() -> run(world, panel[0], frames, warmup));
+        }
+        System.exit(0);   // timer ของ GamePanel ยังวิ่งอยู่
+    }
+
+    private static void run(World world, GamePanel panel, int frames, int warmup) {
+        BufferedImage image = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        System.out.printf(Locale.ROOT, "🎨 %d players, %d graves, %d swords, %d potions (%d frames, %d warmup)%n",
+                world.size, world.graves.size(), world.swords, world.potions, frames, warmup);
+
+        measure("apply", frames, warmup, null, f -> {
+            panel.processServerMessage(world.states[f % VARIANTS]);
+            panel.advanceFrame();
+        });
+        measure("panel", frames, warmup, f -> {
+            panel.processServerMessage(world.states[f % VARIANTS]);
+            panel.advanceFrame();
+        }, f -> panel.paintComponent(g));
+
+        // Player / ของบนพื้นแบบเดียวกับที่ GamePanel ถือ แต่วาดตรงๆ ไม่ผ่าน panel
+        List<Player> players = new ArrayList<>();
+        List<WorldFrame> views = new ArrayList<>(VARIANTS);
+        for (String state : world.states) views.add(WorldFrame.fromState(state, List.of()));
+        for (WorldFrame.PlayerView v : views.get(0).players) {
+            players.add(new Player(v.name, "/assets/" + v.characterId + "/", false));
+        }
+        List<DroppedItem> items = new ArrayList<>();
+        for (WorldFrame.ItemView v : views.get(0).items) items.add(new DroppedItem(v.id, v.type, v.x, v.y));
+        IntConsumer sync = f -> {
+            List<WorldFrame.PlayerView> frame = views.get(f % VARIANTS).players;
+            for (int i = 0; i < frame.size(); i++) {
+                WorldFrame.PlayerView v = frame.get(i);
+                Player p = players.get(i);
+                p.syncFromServer(v.x, v.y, v.hp, v.hasSword, v.alive, v.ready, v.actionState, v.facing);
+                p.update();
+            }
+        };
+        measure("Player.draw", frames, warmup, sync, f -> {
+            for (Player p : players) p.draw(g);
+        });
+        measure("drawUI", frames, warmup, sync, f -> {
+            for (Player p : players) if (p.isAlive()) p.drawUI(g);
+        });
+        measure("items", frames, warmup, null, f -> {
+            for (DroppedItem item : items) item.draw(g);
+        });
+
+        List<String> rankings = new ArrayList<>();
+        Map<String, String> characterMap = new HashMap<>();
+        for (WorldFrame.PlayerView v : views.get(0).players) {
+            rankings.add(v.name);
+            characterMap.put(v.name, v.characterId);
+        }
+        GameOverPanel gameOver = new GameOverPanel(rankings, null, characterMap);
+        gameOver.setSize(W, H);
+        layout(gameOver);
+        measure("gameover", frames, warmup, null, f -> gameOver.paint(g));
+        g.dispose();
+    }
+
+    // untimed (ถ้ามี) เตรียมเฟรมนอกช่วงวัด timed คือส่วนที่วัด
+    private static void measure(String label, int frames, int warmup, IntConsumer untimed, IntConsumer timed) {
+        PerfSampler nanos = new PerfSampler();
+        PerfSampler bytes = new PerfSampler();
+        for (int f = 0; f < warmup + frames; f++) {
+            if (untimed != null) untimed.accept(f);
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            timed.accept(f);
+            long took = System.nanoTime() - start;
+            long garbage = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+            if (f < warmup) continue;
+            nanos.record(took);
+            bytes.record(garbage);
+        }
+        System.out.printf(Locale.ROOT,
+                "   %-12s p50 %7.3fms  p95 %7.3fms  p99 %7.3fms  max %7.3fms | alloc avg %9.0f B  p99 %9d B%n",
+                label, nanos.percentile(0.50) / 1e6, nanos.percentile(0.95) / 1e6, nanos.percentile(0.99) / 1e6,
+                nanos.percentile(1.0) / 1e6, bytes.mean(), bytes.percentile(0.99));
+    }
+
+    // headless ไม่มี peer ให้ validate() จัด layout เอง จัดทั้งต้นไม้ตรงๆ
+    private static void layout(Container c) {
+        c.doLayout();
+        for (Component child : c.getComponents()) {
+            if (child instanceof Container container) layout(container);
+        }
+    }
+
+    // ผู้เล่นเดินวนรอบจุดสุ่มบนพื้น ทุก 4 คนตาย 1 (ทิ้งหลุมศพ) ดาบ 1 ต่อ 2 คน ยา 1 ต่อ 4 คน
+    private static World buildWorld(int size) {
+        World world = new World(size);
+        Random random = new Random(42 + size);
+        int[] baseX = new int[size], baseY = new int[size];
+        for (int i = 0; i < size; i++) {
+            baseX[i] = 40 + random.nextInt(W - 160);
+            baseY[i] = 200 + random.nextInt(260);
+            if (i % 4 == 3) world.graves.add(new Point(baseX[i], baseY[i]));
+        }
+        StringBuilder itemSection = new StringBuilder("ITEMS");
+        world.swords = Math.max(1, size / 2);
+        world.potions = Math.max(1, size / 4);
+        for (int id = 1; id <= world.swords + world.potions; id++) {
+            char code = id <= world.swords ? ItemType.SWORD.code : ItemType.HEALTH.code;
+            itemSection.append(':').append(id).append(',').append(code).append(',')
+                    .append(random.nextInt(W - 40)).append(',').append(200 + random.nextInt(280));
+        }
+
+        for (int v = 0; v < VARIANTS; v++) {
+            StringBuilder sb = new StringBuilder("STATE");
+            double angle = 2 * Math.PI * v / VARIANTS;
+            for (int i = 0; i < size; i++) {
+                boolean alive = i % 4 != 3;
+                int dx = (int) Math.round(30 * Math.cos(angle + i)), dy = (int) Math.round(20 * Math.sin(angle + i));
+                String facing = Math.abs(dx) > Math.abs(dy) ? (dx < 0 ? "LEFT" : "RIGHT") : (dy < 0 ? "UP" : "DOWN");
+                sb.append(":Bot ").append(i + 1)
+                        .append(',').append(alive ? baseX[i] + dx : baseX[i])
+                        .append(',').append(alive ? baseY[i] + dy : baseY[i])
+                        .append(',').append(alive ? 5 + (i * 37 + v) % 96 : 0)
+                        .append(',').append(i % 2 == 0)
+                        .append(",boy").append(i % 3 + 1)
+                        .append(',').append(alive)
+                        .append(",true,").append(STATES[(i + v / 16) % STATES.length])
+                        .append(',').append(facing);
+            }
+            world.states[v] = sb.append('|').append(itemSection).toString();
+        }
+        return world;
+    }
+}
@@ -0,0 +1,52 @@
+import java.io.*;
+import java.net.Socket;
+
+// ฝั่ง game node: ลงทะเบียนกับ MatchRouter แล้วรายงาน load ทุกวินาที หลุดเมื่อไหร่ก็ต่อใหม่
+public class RouterLink implements Runnable {
+    private static final long REPORT_MS = 1_000;
+    private static final long RETRY_MS = 2_000;
+
+    private final String routerHost;
+    private final int routerPort;
+    private final String publicHost;
+    private final int publicPort;
+
+    public RouterLink(String routerAddress, String publicHost, int publicPort) {
+        int colon = routerAddress.lastIndexOf(':');
+        this.routerHost = colon < 0 ? routerAddress : routerAddress.substring(0, colon);
+        this.routerPort = colon < 0 ? 12345 : Integer.parseInt(routerAddress.substring(colon + 1));
+        this.publicHost = publicHost;
+        this.publicPort = publicPort;
+    }
+
+    public void start() {
+        Thread t = new Thread(this, "RouterLink");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try (Socket s = new Socket(routerHost, routerPort)) {
+                PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+                out.println("NODE:" + publicHost + ":" + publicPort + ":" + JoinToken.issue(publicHost, publicPort));
+                System.out.println("🧭 Registered with router " + routerHost + ":" + routerPort);
+                while (!out.checkError()) {
+                    out.println("LOAD:" + ServerMetrics.liveRooms + ":" + ServerMetrics.livePlayers
+                            + ":" + String.format(java.util.Locale.ROOT, "%.3f", ServerMetrics.tickHeadroom()));
+                    Thread.sleep(REPORT_MS);
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ Router unreachable (" + e.getMessage() + "), retrying...");
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
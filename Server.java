@@ -1,359 +1,671 @@
 import java.io.*;
 import java.net.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
-import java.awt.Point;
-
-class PlayerState {
-    int x, y, hp;
-    boolean hasSword;
-    boolean isAlive;
-    String characterId;
-    boolean isReady;
-    String actionState = "IDLE";
-    String facingDirection = "RIGHT";
-    static final List<String> deathOrder = new CopyOnWriteArrayList<>();
-
-    PlayerState(int x, int y, int hp, boolean hasSword, boolean isAlive, String characterId) {
-        this.x = x; this.y = y; this.hp = hp;
-        this.hasSword = hasSword; this.isAlive = isAlive;
-        this.characterId = characterId;
-        this.isReady = false;
-    }
-}
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 public class Server {
-    private static final int PORT = 12345;
-    private static final Map<String, PlayerState> players = new ConcurrentHashMap<>();
-    private static final List<SwordState> swords = new CopyOnWriteArrayList<>();
-    private static final Set<PrintWriter> clientWriters = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private static final int REQUIRED_PLAYERS = 3;
-    private static volatile boolean gameStarted = false;
-    private static final List<Point> graves = new CopyOnWriteArrayList<>();
+    private static final int DEFAULT_PORT = 12345;
+    private static int port = DEFAULT_PORT;
+    private static String publicHost = System.getProperty("game.publicHost", "localhost");
+    // ถ้าลงทะเบียนกับ router จะรับเฉพาะ client ที่มี join token จาก router (ปิดได้ด้วย -Dgame.allowDirect=true)
+    private static boolean requireToken = false;
+    private static final int TICK_MS = 50;
+    private static final int MAX_COMMANDS_PER_TICK = 4096;
+    private static final int PING_EVERY_TICKS = 20;      // 1 วินาที
+    private static final int METRICS_EVERY_TICKS = 200;  // 10 วินาที
+    private static final int MAX_LINE_BYTES = 512;       // ข้อความจาก client ยาวสุด (SELECT + token ยังไม่ถึง 200)
+    // ด่านรับคนเข้า: backlog ของ kernel / handshake พร้อมกันได้กี่คน / รอคิวได้กี่คน นานเท่าไหร่ / ส่งบรรทัดแรกช้าได้แค่ไหน
+    private static final int ACCEPT_BACKLOG = Integer.getInteger("game.acceptBacklog", 256);
+    private static final int MAX_HANDSHAKES = Integer.getInteger("game.maxHandshakes", 4);
+    private static final int MAX_WAITING = Integer.getInteger("game.maxWaiting", 1024);
+    private static final long ADMISSION_WAIT_MS = Long.getLong("game.admissionWaitMs", 30_000);
+    private static final long HANDSHAKE_TIMEOUT_MS = Long.getLong("game.handshakeTimeoutMs", 5_000);
+    private static Admission admission;
+    // บีบอัด STATE ขาออก (เปิดด้วย -Dgame.compress=true) ใช้กับ client ที่ขอ deflate ตอน SELECT เท่านั้น
+    // เปิดจริงรายห้อง: ห้องที่มีคนตั้งแต่ game.compress.minPlayers ขึ้นไป (0 = ทุกห้อง) lobby บีบเสมอ
+    // ระดับ / ขนาดขั้นต่ำเป็นของ ClientConnection (game.compress.level, game.compress.minBytes)
+    static final boolean COMPRESSION_ENABLED = Boolean.getBoolean("game.compress");
+    static final int COMPRESS_MIN_PLAYERS = Integer.getInteger("game.compress.minPlayers", 0);
+    // ขนาดห้อง / ความกว้าง skill bucket (0 = ไม่แบ่ง) / รอนานเท่าไหร่ถึงยอมจับข้าม bucket
+    private static final int MATCH_SIZE = Integer.getInteger("game.matchSize", 3);
+    private static final int SKILL_BUCKET = Integer.getInteger("game.skillBucket", 0);
+    private static final long RELAX_AFTER_MS = Long.getLong("game.matchRelaxMs", 15_000);
+    private static final int MAX_MATCHES_PER_TICK = 64;
+    private static final int LOBBY_LIST_LIMIT = 10;
+    // หลุดแล้วกลับมาได้ภายในเวลานี้โดยยังเป็นคนเดิม อยู่ห้องเดิม
+    // seed ของห้องได้จาก seed นี้ + เลขห้อง ตั้ง -Dgame.seed เพื่อเล่นซ้ำให้ผลเหมือนเดิม (ดูใน log ตอนเริ่มห้อง)
+    private static final long BASE_SEED = Long.getLong("game.seed", System.nanoTime());
+    private static final long RESUME_GRACE_MS = Long.getLong("game.resumeGraceMs", 10_000);
+    private static final SecureRandom tokenRandom = new SecureRandom();
+    // session token -> ชื่อผู้เล่น ให้ network thread หาชื่อได้ตอน RESUME (เขียนโดย simulation thread)
+    private static final Map<String, String> resumableSessions = new ConcurrentHashMap<>();
+    // ผู้ชมไม่ต่อ node ตรง: SpectatorRelay subscribe ครั้งเดียวแล้วกระจายต่อเอง
+    // node ส่ง STATE ของแต่ละห้องให้ relay แค่ 1 ใน SPECTATE_EVERY_TICKS tick (default 5 Hz) encode ครั้งเดียวต่อห้อง
+    private static final int SPECTATE_EVERY_TICKS = Integer.getInteger("game.spectateEveryTicks", 4);
+    private static final List<ClientConnection> relays = new CopyOnWriteArrayList<>();
+    // checkpoint ของทุกห้องลงไฟล์ (-Dgame.checkpoint=<ไฟล์>) ทุก CHECKPOINT_EVERY_TICKS tick (default 1 วินาที)
+    // -Dgame.standby=true: อ่าน checkpoint จากไฟล์เดียวกันตามไว้ตลอด ยังไม่เปิด port จนกว่าตัวหลักจะตาย/ถูกปิด
+    // แล้วรับช่วงจาก checkpoint ล่าสุด client ที่หลุดไป RESUME เข้าตัวนี้ที่ port เดิมได้ภายใน grace window
+    private static final String CHECKPOINT_PATH = System.getProperty("game.checkpoint");
+    private static final boolean STANDBY = Boolean.getBoolean("game.standby");
+    private static final int CHECKPOINT_EVERY_TICKS = Integer.getInteger("game.checkpointEveryTicks", 20);
+    private static final int CHECKPOINT_SLOT_BYTES = Integer.getInteger("game.checkpointSlotBytes", 8 << 20);
+    private static final long STANDBY_POLL_MS = 100;
+    private static CheckpointFile checkpoints;
+    private static final StringBuilder roomBuilder = new StringBuilder(1024);
+    // state ทั้งหมดข้างล่างเป็นของ simulation thread คนเดียว network thread แค่ส่งคำสั่งเข้าคิว
+    private static final Map<String, PlayerState> players = new LinkedHashMap<>();
+    private static final Map<Integer, Match> matches = new LinkedHashMap<>();
+    private static final Matchmaker matchmaker = new Matchmaker(MATCH_SIZE, SKILL_BUCKET, RELAX_AFTER_MS);
+    private static final Set<ClientConnection> connections = new LinkedHashSet<>();
+    private static int nextMatchId = 1;
+    private static final Random spawnRandom = new Random(BASE_SEED);
+    private static final CommandQueue commands = new CommandQueue(8192);
 
     public static void main(String[] args) throws IOException {
-        ServerSocket serverSocket = new ServerSocket(PORT);
-        System.out.println("Battle Server running on port " + PORT);
+        if (args.length > 0) port = Integer.parseInt(args[0]);
+        GameEvents.startRecordingIfRequested();
+        if (CHECKPOINT_PATH != null) checkpoints = CheckpointFile.open(Path.of(CHECKPOINT_PATH), CHECKPOINT_SLOT_BYTES);
+        if (STANDBY && checkpoints == null) {
+            System.err.println("❌ -Dgame.standby needs -Dgame.checkpoint=<file>");
+            System.exit(1);
+        }
+        ServerSocketChannel serverChannel = STANDBY ? standBy() : bind();
+        System.out.println("Battle Server running on port " + port);
 
-        new Thread(() -> {
+        if (checkpoints != null) checkpoints.startWriter();
+        startEmbedded();
+
+        String router = System.getProperty("game.router");
+        if (router != null) {
+            requireToken = !Boolean.getBoolean("game.allowDirect");
+            new RouterLink(router, publicHost, port).start();
+        }
+
+        while (true) {
+            SocketChannel channel = serverChannel.accept();
             try {
-                while (true) {
-                    Thread.sleep(50); // Broadcast state more frequently
-                    if (gameStarted) {
-                        checkWinner();
-                    }
-                    broadcastFullState();
+                admission.offer(new SocketTransport(channel));
+            } catch (IOException e) {
+                channel.close();
+            }
+        }
+    }
+
+    private static ServerSocketChannel bind() throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            return serverChannel;
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
+
+    // standby: decode checkpoint ใหม่ทุกก้อนเก็บไว้พร้อมใช้ แล้วลอง bind port เดียวกันเรื่อยๆ
+    // bind ได้เมื่อไหร่แปลว่าตัวหลักไม่อยู่แล้ว -> ใส่ state จากก้อนล่าสุดแล้วเริ่มเป็นตัวหลักแทน (เขียน checkpoint ต่อเอง)
+    private static ServerSocketChannel standBy() throws IOException {
+        System.out.println("🛟 Standby for port " + port + ", following checkpoints in " + CHECKPOINT_PATH);
+        Checkpoint.Image latest = null;
+        while (true) {
+            latest = readCheckpoint(latest);
+            try {
+                ServerSocketChannel serverChannel = bind();
+                restore(readCheckpoint(latest)); // ก้อนสุดท้ายที่ตัวหลักเขียนก่อนตาย
+                return serverChannel;
+            } catch (BindException e) {
+                try {
+                    Thread.sleep(STANDBY_POLL_MS);
+                } catch (InterruptedException ie) {
+                    throw new InterruptedIOException();
                 }
-            } catch (InterruptedException ignored) {
-                ignored.printStackTrace(); // ✅ ดู error จริง
             }
-        }, "StateBroadcaster").start();
+        }
+    }
+
+    private static Checkpoint.Image readCheckpoint(Checkpoint.Image current) {
+        ByteBuffer b = checkpoints.readLatest();
+        if (b == null) return current;
+        try {
+            return Checkpoint.decode(b);
+        } catch (RuntimeException e) {
+            System.err.println("⚠ Unreadable checkpoint skipped: " + e);
+            return current;
+        }
+    }
+
+    // ก่อนเริ่ม simulation thread: ทุกคนในก้อนนี้เป็น session ที่หลุดอยู่ ได้ grace window เต็มสำหรับ RESUME
+    private static void restore(Checkpoint.Image image) {
+        if (image == null) {
+            System.out.println("🛟 Taking over with no checkpoint (starting empty)");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PlayerState p : image.players) {
+            p.disconnectedAt = now;
+            players.put(p.name, p);
+            resumableSessions.put(p.sessionToken, p.name);
+        }
+        for (Match m : image.matches) matches.put(m.id, m);
+        nextMatchId = Math.max(nextMatchId, image.nextMatchId);
+        nextPlayerId.set(image.nextPlayerId);
+        System.out.println("🛟 Took over from checkpoint of tick " + image.tick + " (" + (now - image.createdAt)
+                + "ms old): " + players.size() + " players, " + matches.size() + " matches");
+    }
+
+    // copy state ณ tick นี้ลง buffer ว่าง แล้วให้ writer thread ของ CheckpointFile เขียนลงไฟล์ต่อเอง
+    private static void writeCheckpoint(long tick) {
+        ByteBuffer buf = checkpoints.acquire();
+        if (buf == null) { // ก้อนก่อนยังเขียนไม่เสร็จ (ดิสก์ช้า) ข้ามรอบนี้ ไม่รอ
+            ServerMetrics.checkpointsSkipped.increment();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Checkpoint.encode(buf, tick, nextMatchId, nextPlayerId.get(), players.values(), matches.values());
+        } catch (BufferOverflowException e) {
+            checkpoints.recycle(buf);
+            ServerMetrics.checkpointsSkipped.increment();
+            System.err.println("⚠ Checkpoint larger than " + checkpoints.slotBytes() + " bytes, skipped (raise -Dgame.checkpointSlotBytes)");
+            return;
+        }
+        ServerMetrics.checkpointEncodeNanos.add(System.nanoTime() - start);
+        checkpoints.publish(buf);
+    }
+
+    // เริ่ม simulation + ด่านรับคนเข้า โดยไม่เปิด port (main เรียกก่อนรับ TCP)
+    // เล่นในเครื่องเดียว / ทดสอบ / bench เรียกตรงๆ แล้วต่อด้วย connectLocal() เรียกซ้ำได้
+    static synchronized void startEmbedded() {
+        if (admission != null) return;
+        Thread simulation = new Thread(Server::runSimulation, "GameSimulation");
+        simulation.setPriority(Thread.MAX_PRIORITY); // คนแห่ join ไม่ควรทำให้ห้องที่เล่นอยู่กระตุก
+        simulation.setDaemon(true);
+        simulation.start();
+
+        admission = new Admission(MAX_HANDSHAKES, MAX_WAITING, ADMISSION_WAIT_MS, HANDSHAKE_TIMEOUT_MS,
+                transport -> new ClientHandler(transport).admit());
+    }
+
+    // connection ใน JVM เดียวกัน: ฝั่ง server เข้าด่านรับคนเข้าเหมือน TCP ทุกอย่าง คืนฝั่ง client
+    static Transport connectLocal() {
+        startEmbedded();
+        LoopbackTransport client = LoopbackTransport.open();
+        admission.offer(client.peer());
+        return client;
+    }
 
-        // Game Logic Loop
-        new Thread(() -> {
+    // Game Loop: ดึงคำสั่งจากคิว -> อัปเดต logic -> ส่ง STATE ทุก tick (20 Hz)
+    private static void runSimulation() {
+        long tick = 0;
+        long nextTick = System.nanoTime();
+        while (true) {
+            long tickStart = System.nanoTime();
+            GameEvents.ServerTick tickEvent = new GameEvents.ServerTick();
+            tickEvent.begin();
             try {
-                while(true) {
-                    Thread.sleep(100);
-                    if (!gameStarted) {
-                        checkGameStart();
+                commands.drain(Server::applyCommand, MAX_COMMANDS_PER_TICK);
+                startQueuedMatches();
+                long matchesStart = System.nanoTime();
+                tickEvent.commandsNanos = matchesStart - tickStart;
+
+                Iterator<Match> it = matches.values().iterator();
+                while (it.hasNext()) {
+                    Match m = it.next();
+                    m.tick();
+                    List<String> ranking = m.checkWinner();
+                    if (ranking != null) {
+                        m.finish(ranking);
+                        it.remove();
                     } else {
-                        updateServerLogic();
+                        m.broadcastState();
+                        if (tick % SPECTATE_EVERY_TICKS == 0) m.publishState();
                     }
                 }
-            } catch(InterruptedException ignored) {}
-        }, "GameLogicThread").start();
-
-        while (true) new ClientHandler(serverSocket.accept()).start();
+                long lobbyStart = System.nanoTime();
+                tickEvent.matchesNanos = lobbyStart - matchesStart;
+                broadcastLobbyState();
+                long maintenanceStart = System.nanoTime();
+                tickEvent.lobbyNanos = maintenanceStart - lobbyStart;
+                if (tick % PING_EVERY_TICKS == 0) {
+                    for (ClientConnection conn : connections) conn.sendPing();
+                    for (ClientConnection relay : relays) relay.sendPing();
+                    long nowMs = System.currentTimeMillis();
+                    for (PlayerState p : players.values()) {
+                        if (p.match == null) sendLobbyStatus(p);
+                        p.events.retransmit(p.conn, nowMs, false);
+                    }
+                    expireSessions();
+                }
+                if (checkpoints != null && tick % CHECKPOINT_EVERY_TICKS == 0) writeCheckpoint(tick);
+                if (tick % METRICS_EVERY_TICKS == 0 && tick > 0) {
+                    ServerMetrics.report(connections, matches.values());
+                }
+                tickEvent.maintenanceNanos = System.nanoTime() - maintenanceStart;
+            } catch (Exception e) {
+                e.printStackTrace(); // ✅ ดู error จริง แต่ไม่ให้ loop ตาย
+            }
+            if (tickEvent.shouldCommit()) {
+                tickEvent.tick = tick;
+                tickEvent.matches = matches.size();
+                tickEvent.players = players.size();
+                tickEvent.commit();
+            }
+            ServerMetrics.recordTick(System.nanoTime() - tickStart, matches.size(), players.size());
+
+            tick++;
+            nextTick += TICK_MS * 1_000_000L;
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                nextTick = System.nanoTime(); // ช้ากว่ากำหนด ไม่ต้องไล่ tick ที่หลุดไป
+            }
+        }
     }
 
     private static class ClientHandler extends Thread {
-        private final Socket socket;
-        private PrintWriter out;
-        private BufferedReader in;
+        private final Transport channel;
+        private ClientConnection conn;
+        private BoundedLineReader in;
         private String playerName;
         private String characterId;
+        private boolean joined = false;
+        private ClientConnection relay;   // != null = connection นี้คือ SpectatorRelay
 
-        ClientHandler(Socket s) { this.socket = s; }
+        ClientHandler(Transport c) { this.channel = c; }
 
-        @Override public void run() {
+        // รันบน worker ของ Admission: อ่านบรรทัดแรก ตรวจ ลงทะเบียน แล้วค่อยเริ่ม thread ของตัวเองไว้อ่านคำสั่ง
+        // คืน false ถ้าไม่ได้เข้า (ปิด connection ให้แล้ว)
+        boolean admit() {
+            boolean started = false;
             try {
-                out = new PrintWriter(socket.getOutputStream(), true);
-                in  = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                started = handshake();
+            } catch (ProtocolException e) {
+                ServerMetrics.oversizedLines.increment();
+            } catch (IOException ignored) {
+            } finally {
+                if (started) {
+                    start();
+                } else {
+                    cleanup();
+                }
+            }
+            return started;
+        }
 
-                String selectionMessage = in.readLine();
-                if (selectionMessage == null || !selectionMessage.startsWith("SELECT:")) { return; }
+        private boolean handshake() throws IOException {
+            in  = new BoundedLineReader(channel.input(), MAX_LINE_BYTES);
+
+            String selectionMessage = in.readLine();
+            if (selectionMessage != null && selectionMessage.startsWith("RESUME:")) {
+                return resume(selectionMessage);
+            }
+            if (selectionMessage != null && selectionMessage.startsWith("RELAY")) {
+                return subscribeRelay(selectionMessage);
+            }
+            if (selectionMessage == null || !selectionMessage.startsWith("SELECT:")) { return false; }
+
+            // SELECT:<name>:<characterId>[:<deflate|->[:<join token>]]
+            String[] parts = selectionMessage.split(":");
+            if (parts.length < 3) return false;
+            this.characterId = parts[2];
+
+            if (requireToken && !JoinToken.verify(parts.length > 4 ? parts[4] : null, publicHost, port)) {
+                PrintWriter reject = new PrintWriter(channel.output(), true);
+                reject.println("ERROR:BAD_TOKEN");
+                System.out.println("REJECT: connection without a valid join token");
+                return false;
+            }
 
-                String[] parts = selectionMessage.split(":");
-                this.characterId = parts[2];
+            this.playerName = assignPlayerName();
+            conn = new ClientConnection(channel, playerName);
+            conn.send("ASSIGNED_NAME:" + playerName);
+            if (COMPRESSION_ENABLED && parts.length > 3 && parts[3].equals("deflate")) {
+                conn.send(FrameReader.COMPRESS_DEFLATE);
+                conn.enableCompression(ServerMetrics.LOBBY_COMPRESSION);
+            }
 
-                this.playerName = assignPlayerName();
-                out.println("ASSIGNED_NAME:" + playerName);
+            conn.send("SUCCESS");
+            commands.put(GameCommand.JOIN, playerName, characterId, conn);
+            joined = true;
+            return true;
+        }
 
-                if (gameStarted) {
-                    out.println("ERROR:GAME_ALREADY_STARTED");
-                    System.out.println("REJECT: " + playerName + " tried to join after game started.");
-                    socket.close();
-                    return;
+        @Override public void run() {
+            try {
+                if (relay != null) {
+                    relayLoop();
+                } else {
+                    readCommands();
                 }
+            } catch (ProtocolException e) {
+                ServerMetrics.oversizedLines.increment();
+                System.out.println("🚫 Dropped " + playerName + ": " + e.getMessage());
+            } catch (IOException ignored) {
+            } finally {
+                cleanup();
+            }
+        }
 
+        private void cleanup() {
+            if (joined) {
+                commands.put(GameCommand.LEAVE, playerName, null, conn);
+            }
+            if (conn != null) {
+                conn.close();
+            } else if (relay == null) {
+                channel.close();
+            }
+        }
 
-                out.println("SUCCESS");
-                clientWriters.add(out);
+        // RESUME:<session token>[:<deflate|->] กลับเข้า session เดิมหลังหลุด
+        private boolean resume(String hello) throws IOException {
+            String[] parts = hello.split(":");
+            String name = parts.length > 1 ? resumableSessions.get(parts[1]) : null;
+            if (name == null) {
+                PrintWriter reject = new PrintWriter(channel.output(), true);
+                reject.println("ERROR:RESUME_FAILED");
+                return false;
+            }
+            this.playerName = name;
+            conn = new ClientConnection(channel, playerName);
+            conn.send("RESUMED:" + playerName);
+            if (COMPRESSION_ENABLED && parts.length > 2 && parts[2].equals("deflate")) {
+                conn.send(FrameReader.COMPRESS_DEFLATE);
+                conn.enableCompression(ServerMetrics.LOBBY_COMPRESSION);
+            }
+            // simulation thread เป็นคนตรวจ token อีกรอบและผูก connection ใหม่ + ส่ง state เต็มให้
+            commands.put(GameCommand.RESUME, playerName, parts[1], conn);
+            joined = true;
+            return true;
+        }
 
-                Random r = new Random();
-                int sx = 120 + r.nextInt(520);
-                int sy = 320 + r.nextInt(120);
-                players.put(playerName, new PlayerState(sx, sy, 100, false, true, characterId));
-                System.out.println("JOIN: " + playerName + " as " + characterId + " (" + players.size() + ")");
+        // RELAY[:<join token>] SpectatorRelay ขอรับ STATE ของทุกห้อง (ROOM:<id>:<ข้อความ>)
+        private boolean subscribeRelay(String hello) throws IOException {
+            String token = hello.length() > 6 ? hello.substring(6) : null;
+            if (requireToken && !JoinToken.verify(token, publicHost, port)) {
+                PrintWriter reject = new PrintWriter(channel.output(), true);
+                reject.println("ERROR:BAD_TOKEN");
+                return false;
+            }
+            relay = new ClientConnection(channel, "relay");
+            relays.add(relay);
+            System.out.println("📺 Spectator relay subscribed (" + relays.size() + " relays)");
+            return true;
+        }
 
+        private void relayLoop() throws IOException {
+            try {
                 String msg;
                 while ((msg = in.readLine()) != null) {
-                    handleAction(playerName, msg);
+                    if (msg.startsWith("PONG:")) relay.onPong(msg.substring(5));
                 }
-            } catch (IOException ignored) {
             } finally {
-                if (playerName != null) {
-                    players.remove(playerName);
-                    System.out.println("LEAVE: " + playerName + " (" + players.size() + ")");
-                }
-                clientWriters.remove(out);
-                try { socket.close(); } catch (IOException ignored) {}
+                relays.remove(relay);
+                relay.close();
+                System.out.println("📺 Spectator relay left (" + relays.size() + " relays)");
             }
         }
-    }
-    private static synchronized void resetGame() {
-        System.out.println("🔁 Resetting game state for next round...");
-        gameStarted = false;
-        PlayerState.deathOrder.clear();
-        graves.clear();
-        swords.clear();
 
-        for (PlayerState p : players.values()) {
-            p.hp = 100;
-            p.isAlive = true;
-            p.hasSword = false;
-            p.isReady = false;
-            p.actionState = "IDLE";
-            p.facingDirection = "RIGHT";
+        // ทิ้งคำสั่งที่เกินโควตาตั้งแต่ก่อน parse ถ้าโดนทิ้งติดๆ กันมากเกินถือว่า flood ตัดทิ้งเลย
+        // คำสั่งที่ผ่านถูก decode จาก bytes ลงคิวตรงๆ (ดู CommandDecoder) ไม่สร้าง String ต่อบรรทัด
+        private void readCommands() throws IOException {
+            InputLimiter limiter = new InputLimiter();
+            CommandDecoder decoder = new CommandDecoder();
+            byte[] line = in.line();
+            int len;
+            while ((len = in.readLineBytes()) >= 0) {
+                long now = System.nanoTime();
+                InputLimiter.Kind kind = InputLimiter.classify(line, len);
+                if (!limiter.allow(kind, now)) {
+                    ServerMetrics.inputDropped.increment();
+                    // ACK สะสมทิ้งได้ไม่เสียอะไร resync ทีละเยอะๆ ไม่ควรทำให้โดนตัด
+                    if (kind != InputLimiter.Kind.ACK && limiter.strike(now)) {
+                        ServerMetrics.floodDisconnects.increment();
+                        System.out.println("🚫 Flooding client disconnected: " + playerName);
+                        return;
+                    }
+                    continue;
+                }
+                decoder.decode(line, len, playerName, conn, commands);
+            }
         }
-
-        broadcast("RESET_GAME");
     }
 
-    private static synchronized boolean isCharacterTaken(String charId) {
-        if (gameStarted) return false;
-        for (PlayerState p : players.values()) {
-            if (p.characterId.equals(charId)) { return true; }
+    private static void applyCommand(GameCommand c) {
+        GameEvents.Command event = new GameEvents.Command();
+        event.begin();
+        dispatchCommand(c);
+        if (event.shouldCommit()) {
+            event.opcode = c.opcode;
+            event.player = c.playerName;
+            event.commit();
         }
-        return false;
     }
 
-    // ===== MODIFIED ===== รับข้อมูลใหม่จาก Client
-    private static void handleAction(String name, String action) {
-        PlayerState p = players.get(name);
-        if (p == null) return;
-
-        if (action.startsWith("MOVE:")) {
-            if (!p.isAlive || !gameStarted) return;
-            String[] parts = action.split(":");
-            if (parts.length >= 5) {
-                try {
-                    p.x = Integer.parseInt(parts[1]);
-                    p.y = Integer.parseInt(parts[2]);
-                    p.facingDirection = parts[3];
-                    boolean isMoving = Boolean.parseBoolean(parts[4]);
-
-                    if (p.actionState.equals("IDLE") || p.actionState.equals("WALKING")) {
-                        p.actionState = isMoving ? "WALKING" : "IDLE";
-                    }
-
-                } catch (NumberFormatException ignored) {}
+    private static void dispatchCommand(GameCommand c) {
+        switch (c.opcode) {
+            case GameCommand.JOIN -> {
+                Random r = spawnRandom;
+                int sx = 120 + r.nextInt(520);
+                int sy = 320 + r.nextInt(120);
+                PlayerState p = new PlayerState(sx, sy, 100, false, true, c.text);
+                p.name = c.playerName;
+                p.conn = (ClientConnection) c.ref;
+                p.sessionToken = newSessionToken();
+                resumableSessions.put(p.sessionToken, p.name);
+                connections.add(p.conn);
+                players.put(p.name, p);
+                p.conn.send("SESSION:" + p.sessionToken);
+                System.out.println("JOIN: " + p.name + " as " + c.text + " (" + players.size() + ")");
             }
-        } else if (action.equals("READY")) {
-            if (!gameStarted) {
-                p.isReady = !p.isReady;
-                System.out.println("STATUS: " + name + " is now " + (p.isReady ? "Ready" : "Not Ready"));
+            case GameCommand.LEAVE -> {
+                ClientConnection conn = (ClientConnection) c.ref;
+                connections.remove(conn);
+                PlayerState p = players.get(c.playerName);
+                // LEAVE จาก socket เก่าที่ถูกแทนด้วยการ resume แล้ว ไม่ต้องทำอะไร
+                if (p == null || p.conn != conn) return;
+                p.conn = null;
+                p.disconnectedAt = System.currentTimeMillis();
+                if (matchmaker.remove(p)) p.isReady = false;
+                System.out.println("DISCONNECT: " + p.name + " (can resume for " + RESUME_GRACE_MS + "ms)");
             }
-        } else if (action.startsWith("PICKUP_SWORD:")) {
-            if (!p.isAlive || !gameStarted) return;
-            try {
-                int swordIndex = Integer.parseInt(action.split(":")[1]);
-                if (!p.hasSword && swords.size() > swordIndex) {
-                    SwordState sword = swords.get(swordIndex);
-                    if (!sword.isPickedUp) {
-                        int px = p.x + 32, py = p.y + 32;
-                        int cx = sword.x + 20, cy = sword.y + 20;
-                        if (Math.hypot(px - cx, py - cy) <= 50) {
-                            sword.isPickedUp = true;
-                            sword.ownerName = name;
-                            p.hasSword = true;
-                        }
-                    }
+            case GameCommand.RESUME -> {
+                ClientConnection conn = (ClientConnection) c.ref;
+                PlayerState p = players.get(c.playerName);
+                if (p == null || !c.text.equals(p.sessionToken)) {
+                    conn.send("ERROR:RESUME_FAILED");
+                    conn.closeAfterFlush();
+                    return;
                 }
-            } catch (Exception ignored) {}
-        } else if (action.equals("ATTACK")) {
-            if (p.hasSword && p.hp > 0 && p.isAlive && gameStarted) {
-                p.actionState = "ATTACKING";
-                boolean hitSomeone = false;
-                for (Map.Entry<String, PlayerState> e : players.entrySet()) {
-                    String otherName = e.getKey();
-                    PlayerState otherPlayer = e.getValue();
-                    if (otherName.equals(name) || !otherPlayer.isAlive) continue;
-
-                    if (Math.abs(p.x - otherPlayer.x) < 70 && Math.abs(p.y - otherPlayer.y) < 70) {
-                        otherPlayer.hp -= 25;
-                        hitSomeone = true;
-                        if (otherPlayer.hp <= 0) {
-                            otherPlayer.hp = 0;
-                            otherPlayer.isAlive = false;
-                            graves.add(new Point(otherPlayer.x, otherPlayer.y));
-                            if (!PlayerState.deathOrder.contains(otherName)) {
-                                PlayerState.deathOrder.add(otherName);
-                            }
-                        }
-                        break;
-                    }
+                if (p.conn != null) {
+                    connections.remove(p.conn);
+                    p.conn.close(); // socket เก่าค้างแบบ half-open
                 }
-                if (hitSomeone) {
-                    p.hasSword = false;
-                    for (SwordState s : swords) {
-                        if (name.equals(s.ownerName)) {
-                            Random r = new Random();
-                            s.x = 100 + r.nextInt(600);
-                            s.y = 250 + r.nextInt(200);
-                            s.isPickedUp = false;
-                            s.ownerName = null;
-                            break;
-                        }
-                    }
+                p.conn = conn;
+                connections.add(conn);
+                conn.compressFor(p.match != null ? p.match.compression : ServerMetrics.LOBBY_COMPRESSION);
+                if (p.match != null) {
+                    p.match.resync(p);
+                } else {
+                    sendLobbyStatus(p);
+                    p.events.retransmit(conn, System.currentTimeMillis(), true);
                 }
+                System.out.println("RESUME: " + p.name + " after " + (System.currentTimeMillis() - p.disconnectedAt) + "ms");
             }
+            default -> handleAction(c);
         }
     }
 
-    private static void updateServerLogic() {
-        for (PlayerState p : players.values()) {
-            if (p.actionState.equals("ATTACKING")) {
-                p.actionState = "IDLE";
-            }
+    // ปิด session ที่หลุดเกิน grace window: เหมือนออกจากเกมจริง
+    private static void expireSessions() {
+        long now = System.currentTimeMillis();
+        Iterator<PlayerState> it = players.values().iterator();
+        while (it.hasNext()) {
+            PlayerState p = it.next();
+            if (p.conn != null || now - p.disconnectedAt < RESUME_GRACE_MS) continue;
+            it.remove();
+            resumableSessions.remove(p.sessionToken);
+            if (p.match != null) p.match.removePlayer(p);
+            System.out.println("LEAVE: " + p.name + " (" + players.size() + ")");
         }
     }
 
-    private static synchronized String assignPlayerName() {
-        int playerNumber = players.size() + 1;
-        return "Player " + playerNumber;
+    private static String newSessionToken() {
+        byte[] b = new byte[16];
+        tokenRandom.nextBytes(b);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
     }
 
-    private static synchronized void checkGameStart() {
-        if (gameStarted || players.size() < REQUIRED_PLAYERS) return;
-
-        boolean allReady = players.values().stream().allMatch(p -> p.isReady);
-
-        if (allReady) {
-            gameStarted = true;
-            graves.clear();
-            swords.clear();
-            Random r = new Random();
+    private static boolean isCharacterTaken(String charId) {
+        for (PlayerState p : players.values()) {
+            if (p.match == null && p.characterId.equals(charId)) { return true; }
+        }
+        return false;
+    }
 
-            for (PlayerState p : players.values()) {
-                p.hp = 100;
-                p.isAlive = true;
-                p.hasSword = false;
-            }
+    // ===== MODIFIED ===== READY = เข้า/ออกคิวหาห้อง คำสั่งในเกมส่งต่อให้ห้องที่ผู้เล่นอยู่
+    private static void handleAction(GameCommand c) {
+        PlayerState p = players.get(c.playerName);
+        if (p == null) return;
 
-            int swordsToSpawn = Math.max(1, players.size() - 1);
-            for (int i = 0; i < swordsToSpawn; i++) {
-                int sx = 100 + r.nextInt(600);
-                int sy = 250 + r.nextInt(200);
-                swords.add(new SwordState(sx, sy));
+        if (c.opcode == GameCommand.ACK) {
+            p.events.ack(c.index);
+        } else if (c.opcode == GameCommand.READY) {
+            if (p.match != null) return;
+            if (p.queueTicket == 0) {
+                matchmaker.enqueue(p, System.currentTimeMillis());
+                p.isReady = true;
+            } else {
+                matchmaker.remove(p);
+                p.isReady = false;
             }
-
-            broadcast("START_GAME");
-            System.out.println("🚀 GAME STARTED with " + players.size() + " players");
+            System.out.println("STATUS: " + p.name + " is now " + (p.isReady ? "Ready" : "Not Ready")
+                    + " (queue " + matchmaker.size() + ")");
+            sendLobbyStatus(p);
+        } else if (p.match != null) {
+            p.match.handleAction(c, p);
         }
     }
 
-    // ===== MODIFIED ===== ส่งข้อมูล State และ Direction เพิ่ม
-    private static void broadcastFullState() {
-        if (players.isEmpty()) return;
-        StringBuilder sb = new StringBuilder("STATE");
-
-        for (Map.Entry<String, PlayerState> e : players.entrySet()) {
-            PlayerState ps = e.getValue();
-            sb.append(":").append(e.getKey())
-                    .append(",").append(ps.x).append(",").append(ps.y)
-                    .append(",").append(ps.hp).append(",").append(ps.hasSword)
-                    .append(",").append(ps.characterId).append(",").append(ps.isAlive)
-                    .append(",").append(ps.isReady)
-                    .append(",").append(ps.actionState)
-                    .append(",").append(ps.facingDirection); // ข้อมูลใหม่
+    private static void startQueuedMatches() {
+        if (matchmaker.size() < MATCH_SIZE) return;
+        for (List<PlayerState> group : matchmaker.formMatches(MAX_MATCHES_PER_TICK, System.currentTimeMillis())) {
+            int id = nextMatchId++;
+            Match m = new Match(id, BASE_SEED ^ (id * 0x9E3779B97F4A7C15L), group);
+            matches.put(m.id, m);
+            m.start();
         }
-        sb.append("|SWORDS");
-        for (SwordState s : swords) {
-            sb.append(":").append(s.x).append(",").append(s.y).append(",").append(s.isPickedUp);
-        }
-        sb.append("|GRAVES");
-        for (Point g : graves) {
-            sb.append(":").append(g.x).append(",").append(g.y);
-        }
-        broadcast(sb.toString());
     }
 
-    private static void broadcast(String msg) {
-        for (PrintWriter w : clientWriters) {
-            w.println(msg);
-        }
-        if (msg.startsWith("STATE")) {
-            System.out.println("🛰 Broadcast STATE to " + clientWriters.size() + " clients");
-        }
+    // LOBBY:<ready>:<ลำดับในคิว>:<จำนวนในคิว>
+    private static void sendLobbyStatus(PlayerState p) {
+        if (p.conn == null) return;
+        p.conn.send("LOBBY:" + p.isReady + ":" + matchmaker.positionOf(p) + ":" + matchmaker.size());
     }
 
-    private static void checkWinner() {
-        if (!gameStarted) return;
+    // เลขผู้เล่นเพิ่มขึ้นอย่างเดียว ไม่นำกลับมาใช้ ชื่อจึงไม่ซ้ำกันแม้หลาย worker แจกพร้อมกัน
+    private static final AtomicInteger nextPlayerId = new AtomicInteger();
 
-        List<String> alivePlayers = players.entrySet().stream()
-                .filter(e -> e.getValue().isAlive)
-                .map(Map.Entry::getKey)
-                .toList();
-
-        // เมื่อเหลือรอด <= 1 ให้เกมจบ
-        if (alivePlayers.size() <= 1 && players.size() >= 2) {
-            String winnerName = alivePlayers.isEmpty() ? "NO ONE" : alivePlayers.get(0);
-
-            List<String> rankingList = new ArrayList<>();
+    private static String assignPlayerName() {
+        return "Player " + nextPlayerId.incrementAndGet();
+    }
 
-            // 🥇 คนสุดท้ายรอดชีวิต
-            if (!winnerName.equals("NO ONE")) {
-                rankingList.add(winnerName);
-            }
+    // ===== MODIFIED ===== ส่งข้อมูล State และ Direction เพิ่ม
+    static void appendPlayer(StringBuilder sb, PlayerState ps) {
+        sb.append(":").append(ps.name)
+                .append(",").append(ps.x).append(",").append(ps.y)
+                .append(",").append(ps.hp).append(",").append(ps.hasSword)
+                .append(",").append(ps.characterId).append(",").append(ps.isAlive)
+                .append(",").append(ps.isReady)
+                .append(",").append(ps.actionState)
+                .append(",").append(ps.facingDirection); // ข้อมูลใหม่
+    }
 
-            // 🥈–🥉 คนที่ตายก่อนหน้า (เรียงย้อนจาก deathOrder)
-            for (int i = PlayerState.deathOrder.size() - 1; i >= 0; i--) {
-                String name = PlayerState.deathOrder.get(i);
-                if (!rankingList.contains(name)) {
-                    rankingList.add(name);
-                }
+    // encode เป็น bytes ครั้งเดียวต่อ tick แล้วทุก connection ใน recipients เขียนจาก buffer เดียวกัน
+    // client ที่ link แย่จะได้ STATE ถี่น้อยลง (ของถาวรอย่างหลุมศพมาทาง EVT ไม่ได้อยู่ใน STATE แล้ว)
+    // และถ้ายังเกินงบ bytes ต่อก้อน ได้ STATE บางส่วนตามความสำคัญจาก partial (ห้องแข่ง) แทน
+    static void fanOutSnapshot(Collection<PlayerState> recipients, StringBuilder sb, int entities, Match partial) {
+        SharedFrame frame = null;
+        GameEvents.SnapshotEncode event = null;
+        int sent = 0;
+        for (PlayerState p : recipients) {
+            ClientConnection conn = p.conn;
+            if (conn == null || !conn.shouldSendSnapshot()) continue;
+            int budget = partial == null ? 0 : conn.snapshotBudget(sb.length() + 1);
+            if (budget > 0) {
+                partial.sendPartial(p, budget);
+                continue;
             }
-
-            // กันพลาด: ใส่ชื่อที่อาจตกหล่น
-            for (String n : players.keySet()) {
-                if (!rankingList.contains(n)) {
-                    rankingList.add(n);
-                }
+            if (frame == null) {
+                event = new GameEvents.SnapshotEncode();
+                event.begin();
+                frame = SharedFrame.encodeLine(sb);
+                event.end();
             }
+            conn.sendSnapshot(frame);
+            sent++;
+            ServerMetrics.snapshotsSent.increment();
+        }
+        if (frame == null) return;
+        if (event.shouldCommit()) {
+            event.bytes = frame.size();
+            event.entities = entities;
+            event.recipients = sent;
+            event.commit();
+        }
+        frame.release();
+    }
 
-            // ส่งให้ทุก client
-            String msg = "WINNER:" + winnerName + ":" + String.join(",", rankingList);
-            broadcast(msg);
-
-            System.out.println("🏆 GAME OVER — WINNER: " + winnerName);
-            System.out.println("Ranking: " + rankingList);
+    // ส่งต่อให้ relay: encode ครั้งเดียวต่อห้อง ไม่ว่าจะมีผู้ชมกี่คน ค่าใช้จ่ายฝั่ง node ขึ้นกับจำนวน relay เท่านั้น
+    static void publishRoom(int matchId, CharSequence msg) {
+        if (relays.isEmpty()) return;
+        StringBuilder sb = roomBuilder;
+        sb.setLength(0);
+        sb.append("ROOM:").append(matchId).append(':').append(msg);
+        SharedFrame frame = SharedFrame.encodeLine(sb);
+        for (ClientConnection relay : relays) relay.send(frame);
+        frame.release();
+    }
 
-            // reset สำหรับรอบต่อไป
-            resetGame();
+    static void broadcast(Collection<PlayerState> recipients, String msg) {
+        if (recipients.isEmpty()) return;
+        SharedFrame frame = SharedFrame.encodeLine(msg);
+        for (PlayerState p : recipients) {
+            if (p.conn != null) p.conn.send(frame);
         }
+        frame.release();
     }
 
+    // lobby: STATE เดียวกันสำหรับทุกคนที่ยังไม่ได้อยู่ในห้อง แสดงแค่ LOBBY_LIST_LIMIT คนแรก
+    // (ลำดับคิวของตัวเองดูจาก LOBBY message แทน)
+    private static final StringBuilder lobbyBuilder = new StringBuilder(1024);
+    private static final List<PlayerState> lobby = new ArrayList<>();
+
+    private static void broadcastLobbyState() {
+        lobby.clear();
+        for (PlayerState p : players.values()) {
+            if (p.match == null) lobby.add(p);
+        }
+        if (lobby.isEmpty()) return;
 
-}
\ No newline at end of file
+        StringBuilder sb = lobbyBuilder;
+        sb.setLength(0);
+        sb.append("STATE");
+        for (int i = 0; i < lobby.size() && i < LOBBY_LIST_LIMIT; i++) {
+            appendPlayer(sb, lobby.get(i));
+        }
+        sb.append("|ITEMS");
+        fanOutSnapshot(lobby, sb, Math.min(lobby.size(), LOBBY_LIST_LIMIT), null);
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// ตัวนับสถิติของ server เขียนจากหลาย thread ได้ พิมพ์สรุปเป็นระยะจาก simulation thread
+public final class ServerMetrics {
+    static final LongAdder snapshotsSent = new LongAdder();
+    static final LongAdder snapshotsSkipped = new LongAdder();
+    static final LongAdder snapshotsCoalesced = new LongAdder();
+    static final LongAdder snapshotsPartial = new LongAdder();   // STATE บางส่วนตามงบ bytes
+    static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder framesUncompressed = new LongAdder();
+    // input ที่ถูกปฏิเสธ (เกินโควตา / บรรทัดยาวเกิน / ตัดทิ้งเพราะ flood)
+    static final LongAdder inputDropped = new LongAdder();
+    static final LongAdder oversizedLines = new LongAdder();
+    static final LongAdder floodDisconnects = new LongAdder();
+    // ด่านรับคนเข้า (Admission)
+    static final LongAdder admitted = new LongAdder();
+    static final LongAdder admissionRejected = new LongAdder();
+    static final LongAdder handshakeTimeouts = new LongAdder();
+    static volatile int admissionWaiting;
+    // ช่อง EVT: ส่งครั้งแรก / ส่งซ้ำเพราะไม่มี ACK / ทิ้งเพราะค้างเกิน MAX_UNACKED
+    static final LongAdder eventsSent = new LongAdder();
+    static final LongAdder eventsRetransmitted = new LongAdder();
+    static final LongAdder eventsDropped = new LongAdder();
+    // checkpoint: เขียนลงไฟล์แล้ว / ข้ามเพราะ writer ยังไม่เสร็จหรือใหญ่เกิน slot / เวลา encode บน simulation thread
+    static final LongAdder checkpointsWritten = new LongAdder();
+    static final LongAdder checkpointsSkipped = new LongAdder();
+    static final LongAdder checkpointEncodeNanos = new LongAdder();
+    private static final LongAdder checkpointWriteNanos = new LongAdder();
+    private static volatile int lastCheckpointBytes;
+
+    private static final LongAdder compressIn = new LongAdder();
+    private static final LongAdder compressOut = new LongAdder();
+    private static final LongAdder compressNanos = new LongAdder();
+    private static final LongAdder framesCompressed = new LongAdder();
+
+    private static final LongAdder rttSum = new LongAdder();
+    private static final LongAdder rttCount = new LongAdder();
+    private static final AtomicLong rttMax = new AtomicLong();
+
+    private static long lastReportNanos = System.nanoTime();
+    private static final int COMPRESSION_ROOMS_SHOWN = 5;
+
+    // ตัวนับการบีบอัดของห้องหนึ่ง (หรือ lobby / relay) นับเข้ายอดรวมด้วย
+    // writer thread ของแต่ละ connection เป็นคนเขียน report อ่านแล้วล้างจาก simulation thread
+    static final class Compression {
+        final String label;
+        private final LongAdder in = new LongAdder();
+        private final LongAdder out = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        // ค่าของรอบ report ล่าสุด
+        private long lastIn, lastOut, lastNanos, lastFrames, lastSkipped;
+
+        Compression(String label) {
+            this.label = label;
+        }
+
+        void record(int rawBytes, int packedBytes, long took) {
+            in.add(rawBytes);
+            out.add(packedBytes);
+            nanos.add(took);
+            frames.increment();
+            recordCompression(rawBytes, packedBytes, took);
+        }
+
+        // frame เล็กกว่า threshold ส่งดิบ
+        void recordSkipped() {
+            skipped.increment();
+            framesUncompressed.increment();
+        }
+
+        private boolean collect() {
+            lastIn = in.sumThenReset();
+            lastOut = out.sumThenReset();
+            lastNanos = nanos.sumThenReset();
+            lastFrames = frames.sumThenReset();
+            lastSkipped = skipped.sumThenReset();
+            return lastFrames > 0;
+        }
+    }
+
+    static final Compression LOBBY_COMPRESSION = new Compression("lobby");
+
+    // load ปัจจุบัน เขียนโดย simulation thread อ่านโดย RouterLink
+    static volatile int liveRooms, livePlayers;
+    private static volatile long avgTickNanos;
+    private static final long TICK_BUDGET_NANOS = 50_000_000L;
+
+    private ServerMetrics() {}
+
+    static void recordRtt(long nanos) {
+        rttSum.add(nanos);
+        rttCount.increment();
+        rttMax.accumulateAndGet(nanos, Math::max);
+    }
+
+    static void recordTick(long nanos, int rooms, int players) {
+        avgTickNanos = (avgTickNanos * 15 + nanos) / 16;
+        liveRooms = rooms;
+        livePlayers = players;
+    }
+
+    // สัดส่วนเวลาว่างต่อ tick (1.0 = ว่างทั้งหมด, 0 = tick เต็ม budget)
+    static double tickHeadroom() {
+        return Math.max(0.0, 1.0 - avgTickNanos / (double) TICK_BUDGET_NANOS);
+    }
+
+    // writer thread ของ CheckpointFile
+    static void recordCheckpoint(int bytes, long writeNanos) {
+        checkpointsWritten.increment();
+        checkpointWriteNanos.add(writeNanos);
+        lastCheckpointBytes = bytes;
+    }
+
+    private static void recordCompression(int rawBytes, int packedBytes, long nanos) {
+        compressIn.add(rawBytes);
+        compressOut.add(packedBytes);
+        compressNanos.add(nanos);
+        framesCompressed.increment();
+    }
+
+    // เรียกจาก simulation thread เท่านั้น
+    static void report(Collection<ClientConnection> connections, Collection<Match> matches) {
+        long now = System.nanoTime();
+        double secs = (now - lastReportNanos) / 1e9;
+        lastReportNanos = now;
+
+        long samples = rttCount.sumThenReset();
+        long avgRtt = samples == 0 ? -1 : rttSum.sumThenReset() / samples / 1_000_000L;
+        long maxRtt = rttMax.getAndSet(0) / 1_000_000L;
+
+        int slow = 0;
+        long jitterMax = 0;
+        for (ClientConnection c : connections) {
+            if (c.snapshotInterval > 1) slow++;
+            jitterMax = Math.max(jitterMax, c.getJitterMillis());
+        }
+
+        System.out.printf("📊 tick=%.2fms headroom=%.0f%% clients=%d rtt(avg/max)=%d/%dms jitterMax=%dms snapshots sent=%d partial=%d skipped=%d coalesced=%d reduced-rate=%d out=%.1fKB/s%n",
+                avgTickNanos / 1e6, tickHeadroom() * 100, connections.size(), avgRtt, maxRtt, jitterMax,
+                snapshotsSent.sumThenReset(), snapshotsPartial.sumThenReset(), snapshotsSkipped.sumThenReset(), snapshotsCoalesced.sumThenReset(),
+                slow, bytesOut.sumThenReset() / 1024.0 / secs);
+
+        long dropped = inputDropped.sumThenReset();
+        long oversized = oversizedLines.sumThenReset();
+        long kicked = floodDisconnects.sumThenReset();
+        if (dropped + oversized + kicked > 0) {
+            System.out.printf("🚫 input dropped=%d (%.0f/s) oversized=%d flood-disconnects=%d%n",
+                    dropped, dropped / secs, oversized, kicked);
+        }
+
+        long joined = admitted.sumThenReset();
+        long busy = admissionRejected.sumThenReset();
+        long timedOut = handshakeTimeouts.sumThenReset();
+        if (joined + busy + timedOut > 0 || admissionWaiting > 0) {
+            System.out.printf("🚪 admitted=%d (%.0f/s) waiting=%d rejected-busy=%d handshake-timeouts=%d%n",
+                    joined, joined / secs, admissionWaiting, busy, timedOut);
+        }
+
+        long events = eventsSent.sumThenReset();
+        long resent = eventsRetransmitted.sumThenReset();
+        long lost = eventsDropped.sumThenReset();
+        if (events + resent + lost > 0) {
+            System.out.printf("📨 events sent=%d retransmitted=%d dropped=%d%n", events, resent, lost);
+        }
+
+        long written = checkpointsWritten.sumThenReset();
+        long skippedCheckpoints = checkpointsSkipped.sumThenReset();
+        if (written + skippedCheckpoints > 0) {
+            long encode = checkpointEncodeNanos.sumThenReset();
+            long write = checkpointWriteNanos.sumThenReset();
+            System.out.printf("💾 checkpoints written=%d skipped=%d last=%.1fKB encode=%.2fms write=%.2fms (avg)%n",
+                    written, skippedCheckpoints, lastCheckpointBytes / 1024.0,
+                    encode / 1e6 / Math.max(1, written + skippedCheckpoints), write / 1e6 / Math.max(1, written));
+        }
+
+        long frames = framesCompressed.sumThenReset();
+        long raw = compressIn.sumThenReset();
+        long packed = compressOut.sumThenReset();
+        long cpuNanos = compressNanos.sumThenReset();
+        long skipped = framesUncompressed.sumThenReset();
+        if (frames > 0) {
+            // CPU ที่ใช้บีบ เทียบกับ bytes ที่ประหยัดได้ ไว้ตัดสินใจเปิด/ปิดต่อห้อง
+            System.out.printf("🗜 compress frames=%d below-threshold=%d ratio=%.2f saved=%.1fKB/s cpu=%.2fms/s (%.1fus/frame)%n",
+                    frames, skipped, packed / (double) raw, (raw - packed) / 1024.0 / secs,
+                    cpuNanos / 1e6 / secs, cpuNanos / 1e3 / frames);
+        }
+        // รายห้อง (ที่ส่ง bytes มากสุดก่อน) ดูว่าห้องไหนคุ้มที่จะบีบ ปรับด้วย game.compress.minPlayers
+        List<Compression> rooms = new ArrayList<>();
+        if (LOBBY_COMPRESSION.collect()) rooms.add(LOBBY_COMPRESSION);
+        for (Match m : matches) {
+            if (m.compression != null && m.compression.collect()) rooms.add(m.compression);
+        }
+        rooms.sort(Comparator.comparingLong((Compression c) -> c.lastIn).reversed());
+        for (int i = 0; i < Math.min(rooms.size(), COMPRESSION_ROOMS_SHOWN); i++) {
+            Compression c = rooms.get(i);
+            System.out.printf("   🗜 %s frames=%d below-threshold=%d ratio=%.2f saved=%.1fKB/s cpu=%.2fms/s%n",
+                    c.label, c.lastFrames, c.lastSkipped, c.lastOut / (double) c.lastIn,
+                    (c.lastIn - c.lastOut) / 1024.0 / secs, c.lastNanos / 1e6 / secs);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ข้อความขาออกที่ encode เป็น bytes ครั้งเดียว แล้วแชร์ให้ทุก connection เขียนจาก buffer เดียวกัน
+// แต่ละ connection ใช้ duplicate() ของตัวเองเพื่อเก็บ position แยก ไม่มีการ copy
+// นับ reference: ใครถือ frame ต้อง release() เมื่อเขียนเสร็จ ครบแล้ว buffer กลับเข้า pool
+public final class SharedFrame {
+    private static final int SMALL = 256;
+    private static final int LARGE = 64 * 1024;
+    private static final int POOL_LIMIT = 256;
+    private static final ConcurrentLinkedQueue<ByteBuffer> smallPool = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<ByteBuffer> largePool = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<CharsetEncoder> ENCODER =
+            ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+
+    private final ByteBuffer data;      // เขียนเสร็จแล้ว flip พร้อมอ่าน
+    private final ByteBuffer readOnly;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private SharedFrame(ByteBuffer data) {
+        this.data = data;
+        this.readOnly = data.asReadOnlyBuffer();
+    }
+
+    // encode 1 บรรทัด (เติม '\n' ให้) คนสร้างถือ reference แรก
+    public static SharedFrame encodeLine(CharSequence text) {
+        return encodeLine(text, 0, text.length());
+    }
+
+    public static SharedFrame encodeLine(CharSequence text, int start, int end) {
+        int worstCase = (end - start) * 3 + 1;
+        ByteBuffer buf = acquire(worstCase);
+        CharsetEncoder enc = ENCODER.get().reset();
+        CoderResult r = enc.encode(CharBuffer.wrap(text, start, end), buf, true);
+        if (r.isError()) {
+            release(buf);
+            throw new IllegalArgumentException("Cannot encode frame: " + r);
+        }
+        enc.flush(buf);
+        buf.put((byte) '\n');
+        buf.flip();
+        return new SharedFrame(buf);
+    }
+
+    private static ByteBuffer acquire(int size) {
+        ByteBuffer b = null;
+        if (size <= SMALL) {
+            b = smallPool.poll();
+            if (b == null) b = ByteBuffer.allocateDirect(SMALL);
+        } else if (size <= LARGE) {
+            b = largePool.poll();
+            if (b == null) b = ByteBuffer.allocateDirect(LARGE);
+        } else {
+            b = ByteBuffer.allocateDirect(size); // ใหญ่ผิดปกติ ไม่เก็บเข้า pool
+        }
+        b.clear();
+        return b;
+    }
+
+    private static void release(ByteBuffer b) {
+        if (b.capacity() == SMALL && smallPool.size() < POOL_LIMIT) smallPool.offer(b);
+        else if (b.capacity() == LARGE && largePool.size() < POOL_LIMIT) largePool.offer(b);
+    }
+
+    // view ใหม่สำหรับ connection หนึ่ง: position ของตัวเอง แก้ข้อมูลไม่ได้
+    public ByteBuffer view() {
+        return readOnly.duplicate();
+    }
+
+    public int size() {
+        return data.limit();
+    }
+
+    public SharedFrame retain() {
+        refs.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int left = refs.decrementAndGet();
+        if (left == 0) {
+            release(data);
+        } else if (left < 0) {
+            throw new IllegalStateException("SharedFrame released too many times");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.*;
+
+// รัน MatchSimulation แบบไม่มี network ไม่รอ tick (เร็วกว่า real time หลายพันเท่า) ด้วยบอทง่ายๆ
+// ใช้ soak-test กติกาใหม่กับห้องจำนวนมาก และเช็กว่า seed เดิมได้ผลเดิม
+//
+//   java SimulationBench [จำนวนห้อง=100000] [คนต่อห้อง=3] [seed=42]
+public class SimulationBench {
+    private static final int MAX_TICKS = 20 * 60 * 10;   // 10 นาทีในเกม ยังไม่จบถือว่าค้าง
+    private static final int STEP = 12;                  // client เดิน 4px ต่อเฟรม 60fps ~ 12px ต่อ tick
+    private static final int REPLAY_CHECKS = 1000;
+
+    public static void main(String[] args) {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        long[] hashes = new long[Math.min(matches, REPLAY_CHECKS)];
+        long totalTicks = 0, stalled = 0, noWinner = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < matches; i++) {
+            MatchSimulation sim = runMatch(seed + i, size);
+            totalTicks += sim.ticks();
+            if (sim.ticks() >= MAX_TICKS) stalled++;
+            List<String> ranking = sim.ranking();
+            if (ranking == null || ranking.isEmpty() || !sim.players.get(ranking.get(0)).isAlive) noWinner++;
+            if (i < hashes.length) hashes[i] = sim.stateHash();
+        }
+        long took = System.nanoTime() - start;
+
+        int mismatches = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (runMatch(seed + i, size).stateHash() != hashes[i]) mismatches++;
+        }
+
+        double secs = took / 1e9;
+        double simulatedSecs = totalTicks * 0.05;
+        System.out.printf(Locale.ROOT, "🧪 %d matches x %d players in %.2fs (%.0f matches/s, %.0f ticks/s)%n",
+                matches, size, secs, matches / secs, totalTicks / secs);
+        System.out.printf(Locale.ROOT, "   avg match %.1fs game time, %.0fx real time, %d stalled, %d without winner%n",
+                simulatedSecs / matches, simulatedSecs / secs, stalled, noWinner);
+        System.out.println(mismatches == 0
+                ? "✅ replay of " + hashes.length + " seeds matched"
+                : "❌ " + mismatches + " of " + hashes.length + " replays diverged");
+    }
+
+    // บอท: ไม่มีดาบ -> เดินไปหาดาบ (เดินทับแล้ว server เก็บให้เอง), มีดาบ -> เดินไปหาศัตรูที่ใกล้สุดแล้วฟัน
+    static MatchSimulation runMatch(long seed, int size) {
+        List<PlayerState> members = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PlayerState p = new PlayerState(0, 0, 100, false, true, "boy" + (i % 3 + 1));
+            p.name = "Bot " + (i + 1);
+            members.add(p);
+        }
+        MatchSimulation sim = new MatchSimulation(seed, members);
+        sim.start();
+        Random jitter = new Random(~seed);
+        GameCommand c = new GameCommand();
+
+        while (sim.ticks() < MAX_TICKS && sim.ranking() == null) {
+            for (PlayerState p : members) {
+                if (!p.isAlive) continue;
+                int tx, ty;
+                if (!p.hasSword) {
+                    ItemState s = nearestSword(sim, p);
+                    if (s == null) continue;
+                    tx = s.x - 12;
+                    ty = s.y - 12;
+                } else {
+                    PlayerState target = nearestEnemy(sim, p);
+                    if (target == null) continue;
+                    tx = target.x;
+                    ty = target.y;
+                    if (Math.abs(p.x - tx) < 60 && Math.abs(p.y - ty) < 60) {
+                        command(c, GameCommand.ATTACK);
+                        sim.apply(c, p);
+                        continue;
+                    }
+                }
+                command(c, GameCommand.MOVE);
+                c.x = p.x + Integer.signum(tx - p.x) * Math.min(STEP, Math.abs(tx - p.x)) + jitter.nextInt(3) - 1;
+                c.y = p.y + Integer.signum(ty - p.y) * Math.min(STEP, Math.abs(ty - p.y)) + jitter.nextInt(3) - 1;
+                c.text = tx < p.x ? "LEFT" : "RIGHT";
+                c.moving = true;
+                sim.apply(c, p);
+            }
+            sim.tick();
+            sim.events.clear();   // บอทไม่ต้องใช้ event
+        }
+        return sim;
+    }
+
+    private static void command(GameCommand c, int opcode) {
+        c.clear();
+        c.opcode = opcode;
+    }
+
+    private static ItemState nearestSword(MatchSimulation sim, PlayerState p) {
+        ItemState best = null;
+        double bestDist = Double.MAX_VALUE;
+        for (ItemState s : sim.items.all()) {
+            if (!s.onGround || s.type != ItemType.SWORD) continue;
+            double d = Math.hypot(s.x - p.x, s.y - p.y);
+            if (d < bestDist) {
+                bestDist = d;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    private static PlayerState nearestEnemy(MatchSimulation sim, PlayerState p) {
+        PlayerState best = null;
+        double bestDist = Double.MAX_VALUE;
+        for (PlayerState o : sim.players.values()) {
+            if (o == p || !o.isAlive) continue;
+            double d = Math.hypot(o.x - p.x, o.y - p.y);
+            if (d < bestDist) {
+                bestDist = d;
+                best = o;
+            }
+        }
+        return best;
+    }
+}
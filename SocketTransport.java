@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// Transport บน TCP: ห่อ SocketChannel แบบ blocking
+// stream อ่าน/เขียนมาจาก socket adaptor จึงใช้ SO_TIMEOUT ได้ ส่วน write(ByteBuffer[]) ไปที่ channel ตรงๆ
+final class SocketTransport implements Transport {
+    private final SocketChannel channel;
+
+    SocketTransport(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    static SocketTransport connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            return new SocketTransport(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream input() throws IOException {
+        return channel.socket().getInputStream();
+    }
+
+    @Override
+    public OutputStream output() throws IOException {
+        return channel.socket().getOutputStream();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public void setReadTimeout(int millis) throws IOException {
+        channel.socket().setSoTimeout(millis);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try { channel.close(); } catch (IOException ignored) {}
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(channel.socket().getRemoteSocketAddress());
+    }
+}
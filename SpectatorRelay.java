@@ -0,0 +1,248 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Relay สำหรับผู้ชม: subscribe game node ครั้งเดียว (RELAY) แล้วกระจาย STATE ให้ผู้ชมกี่ร้อยคนก็ได้
+// node ไม่รู้จักผู้ชมเลย ไม่มี simulation หรือ encode เพิ่มต่อผู้ชม
+// ทุกข้อความถูกถ่วงไว้ DELAY_MS ก่อนถึงผู้ชม (กันดูจอแล้วบอกผู้เล่นในห้อง) และ encode ครั้งเดียวต่อห้อง
+//
+// ทดสอบบนเครื่องเดียว:
+//   java Server
+//   java SpectatorRelay localhost:12345 12400
+//   java Client   (กด WATCH แล้วใส่ localhost:12400)
+public class SpectatorRelay {
+    private static final int DEFAULT_PORT = 12400;
+    private static final long DELAY_MS = Long.getLong("relay.delayMs", 2_000);
+    private static final long RETRY_MS = 2_000;
+    private static final long PING_MS = 1_000;
+    // บีบ frame ให้ผู้ชมที่ขอ deflate (-Drelay.compress=true) แยกจากของ game node
+    private static final boolean COMPRESSION_ENABLED = Boolean.getBoolean("relay.compress");
+    private static final ServerMetrics.Compression COMPRESSION = new ServerMetrics.Compression("relay");
+
+    // ข้อความจาก node ที่รอครบเวลาถ่วง
+    private static final class Pending implements Delayed {
+        final long dueAt;
+        final int roomId;
+        final SharedFrame frame;
+        final boolean state;
+        final boolean last;   // RESET_GAME = ห้องจบแล้ว
+        final boolean persistent;   // EVT ของถาวร (หลุมศพ) คนที่เข้ามาดูทีหลังต้องได้ด้วย
+
+        Pending(long dueAt, int roomId, SharedFrame frame, boolean state, boolean last, boolean persistent) {
+            this.dueAt = dueAt;
+            this.roomId = roomId;
+            this.frame = frame;
+            this.state = state;
+            this.last = last;
+            this.persistent = persistent;
+        }
+
+        @Override public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override public int compareTo(Delayed o) {
+            return Long.compare(dueAt, ((Pending) o).dueAt);
+        }
+    }
+
+    private static final class Room {
+        final int id;
+        final List<ClientConnection> viewers = new ArrayList<>();
+        SharedFrame lastState; // ให้คนที่เข้ามาดูกลางเกมเห็นภาพทันที
+        final List<SharedFrame> history = new ArrayList<>();   // EVT ของถาวร ส่งซ้ำให้คนเข้ามาใหม่
+
+        Room(int id) { this.id = id; }
+    }
+
+    private static final DelayQueue<Pending> delayed = new DelayQueue<>();
+    // เข้า/ออกของผู้ชม ให้ dispatcher thread ทำ ห้องทั้งหมดจึงมี thread เดียวแตะ
+    private static final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private static final Map<Integer, Room> rooms = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        String node = args.length > 0 ? args[0] : "localhost:12345";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int colon = node.lastIndexOf(':');
+        String nodeHost = colon < 0 ? node : node.substring(0, colon);
+        int nodePort = colon < 0 ? 12345 : Integer.parseInt(node.substring(colon + 1));
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port));
+        System.out.println("📺 Spectator Relay on port " + port + " for node " + nodeHost + ":" + nodePort
+                + " (delay " + DELAY_MS + "ms)");
+
+        new Thread(() -> upstream(nodeHost, nodePort), "RelayUpstream").start();
+        new Thread(SpectatorRelay::dispatch, "RelayDispatch").start();
+
+        while (true) {
+            SocketChannel c = serverChannel.accept();
+            new Thread(() -> handleViewer(c), "Viewer-" + c.socket().getRemoteSocketAddress()).start();
+        }
+    }
+
+    // ROOM:<id>:<ข้อความ> จาก node -> encode ส่วนข้อความครั้งเดียวแล้วรอครบเวลาถ่วง
+    private static void upstream(String host, int port) {
+        while (true) {
+            try (Socket s = new Socket(host, port)) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+                PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+                out.println("RELAY:" + JoinToken.issue(host, port));
+                System.out.println("📺 Subscribed to node " + host + ":" + port);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("PING:")) {
+                        out.println("PONG:" + line.substring(5));
+                        continue;
+                    }
+                    if (!line.startsWith("ROOM:")) continue;
+                    int sep = line.indexOf(':', 5);
+                    if (sep < 0) continue;
+                    int roomId;
+                    try {
+                        roomId = Integer.parseInt(line, 5, sep, 10);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    SharedFrame frame = SharedFrame.encodeLine(line, sep + 1, line.length());
+                    boolean state = line.startsWith("STATE", sep + 1);
+                    boolean last = line.startsWith("RESET_GAME", sep + 1);
+                    boolean persistent = line.startsWith("EVT:", sep + 1) && line.contains(":GRAVE_ADDED:");
+                    delayed.add(new Pending(System.currentTimeMillis() + DELAY_MS, roomId, frame, state, last, persistent));
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ Node unreachable (" + e.getMessage() + "), retrying...");
+            }
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void dispatch() {
+        long nextPing = 0;
+        while (true) {
+            try {
+                Pending p = delayed.poll(50, TimeUnit.MILLISECONDS);
+                while (p != null) {
+                    deliver(p);
+                    p = delayed.poll();
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+
+                long now = System.currentTimeMillis();
+                if (now >= nextPing) {
+                    nextPing = now + PING_MS;
+                    for (Room r : rooms.values()) {
+                        r.viewers.removeIf(ClientConnection::isClosed);
+                        for (ClientConnection v : r.viewers) v.sendPing();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace(); // ไม่ให้ dispatcher ตาย
+            }
+        }
+    }
+
+    private static void deliver(Pending p) {
+        try {
+            Room room = rooms.computeIfAbsent(p.roomId, Room::new);
+            if (p.state) {
+                if (room.lastState != null) room.lastState.release();
+                room.lastState = p.frame.retain();
+                for (ClientConnection v : room.viewers) v.sendSnapshot(p.frame);
+                return;
+            }
+            for (ClientConnection v : room.viewers) v.send(p.frame);
+            if (p.persistent) room.history.add(p.frame.retain());
+            if (p.last) closeRoom(room); // ส่งให้ครบแล้วปิดผู้ชมของห้องนี้
+        } finally {
+            p.frame.release();
+        }
+    }
+
+    private static void closeRoom(Room room) {
+        rooms.remove(room.id);
+        for (ClientConnection v : room.viewers) v.closeAfterFlush();
+        room.viewers.clear();
+        if (room.lastState != null) room.lastState.release();
+        room.lastState = null;
+        for (SharedFrame f : room.history) f.release();
+        room.history.clear();
+        System.out.println("📺 Room #" + room.id + " closed");
+    }
+
+    // WATCH[:<room id | *>[:deflate]]
+    private static void handleViewer(SocketChannel channel) {
+        ClientConnection conn = null;
+        try {
+            SocketTransport transport = new SocketTransport(channel);
+            BufferedReader in = new BufferedReader(new InputStreamReader(transport.input()));
+            String hello = in.readLine();
+            if (hello == null || !hello.startsWith("WATCH")) {
+                transport.close();
+                return;
+            }
+            String[] parts = hello.split(":");
+            int wanted = -1;
+            if (parts.length > 1 && !parts[1].isEmpty() && !parts[1].equals("*")) {
+                try {
+                    wanted = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException ignored) {}
+            }
+            boolean deflate = parts.length > 2 && parts[2].equals("deflate");
+
+            ClientConnection viewer = new ClientConnection(transport, "viewer");
+            conn = viewer;
+            int roomId = wanted;
+            tasks.add(() -> join(viewer, roomId, deflate));
+
+            String msg;
+            while ((msg = in.readLine()) != null) {
+                if (msg.startsWith("PONG:")) viewer.onPong(msg.substring(5));
+                // ACK:<seq> ของ EVT ไม่ต้องทำอะไร relay ส่งทาง TCP ต่อเดียวอยู่แล้ว
+            }
+        } catch (IOException ignored) {
+        } finally {
+            if (conn != null) conn.close(); // dispatcher เก็บกวาดออกจากห้องเองตอน ping
+        }
+    }
+
+    // รันบน dispatcher thread
+    private static void join(ClientConnection viewer, int wanted, boolean deflate) {
+        Room room = rooms.get(wanted);
+        if (room == null && wanted < 0) {
+            // ไม่ระบุห้อง: เลือกห้องที่มีคนดูเยอะสุด (ห้องที่น่าสนใจ)
+            for (Room r : rooms.values()) {
+                if (r.lastState == null) continue;
+                if (room == null || r.viewers.size() > room.viewers.size()) room = r;
+            }
+        }
+        if (room == null || room.lastState == null) {
+            viewer.send("ERROR:NO_MATCHES");
+            viewer.closeAfterFlush();
+            return;
+        }
+        viewer.send("SPECTATING:" + room.id);
+        if (deflate && COMPRESSION_ENABLED) {
+            viewer.send(FrameReader.COMPRESS_DEFLATE);
+            viewer.enableCompression(COMPRESSION);
+        }
+        viewer.send("START_GAME");
+        viewer.sendSnapshot(room.lastState);
+        for (SharedFrame f : room.history) viewer.send(f);
+        room.viewers.add(viewer);
+        System.out.println("👀 Viewer joined room #" + room.id + " (" + room.viewers.size() + " watching)");
+    }
+}
@@ -0,0 +1,159 @@
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+// รวมรูปทุกเฟรมของตัวละครหนึ่งตัวเป็น atlas.png รูปเดียว + atlas.idx (ตำแหน่งของแต่ละเฟรม)
+// ตอนเปิดเกมอ่าน 2 ไฟล์นี้ครั้งเดียวแล้วตัดเป็น sub-image แทนการ decode PNG ทีละไฟล์หลายร้อยไฟล์
+// ถ้าไม่มี atlas (ยังไม่ได้รัน packer) Player จะกลับไปโหลดทีละไฟล์เหมือนเดิม
+//
+// สร้าง atlas ใหม่หลังแก้รูปใน assets/:
+//   java SpriteAtlas assets
+public final class SpriteAtlas {
+    private static final int MAGIC = 0x53504154;    // "SPAT"
+    private static final int VERSION = 1;
+    private static final int MAX_WIDTH = 1024;
+    private static final int PADDING = 1;           // กันสีเฟรมข้างๆ ซึมตอนย่อ/ขยาย
+    private static final Pattern FRAME_FILE = Pattern.compile("(?i).*_(\\d+)\\.png");
+
+    private static final Map<String, Optional<SpriteAtlas>> cache = new ConcurrentHashMap<>();
+
+    private final Map<String, BufferedImage> regions;   // sub-image ทุกอันแชร์ raster ของ atlas เดียวกัน
+
+    private SpriteAtlas(Map<String, BufferedImage> regions) {
+        this.regions = regions;
+    }
+
+    // basePath เช่น "/assets/boy1/" คืน null ถ้าไม่มี atlas ของตัวละครนี้
+    public static SpriteAtlas forCharacter(String basePath) {
+        return cache.computeIfAbsent(basePath, SpriteAtlas::load).orElse(null);
+    }
+
+    // key = "<โฟลเดอร์>/<เฟรม>" เช่น "boy_Right/3" หรือ "preview"
+    public BufferedImage get(String key) {
+        return regions.get(key);
+    }
+
+    public BufferedImage frame(String folder, int index) {
+        return regions.get(folder + "/" + index);
+    }
+
+    public int size() {
+        return regions.size();
+    }
+
+    private static Optional<SpriteAtlas> load(String basePath) {
+        try (InputStream idx = SpriteAtlas.class.getResourceAsStream(basePath + "atlas.idx");
+             InputStream png = SpriteAtlas.class.getResourceAsStream(basePath + "atlas.png")) {
+            if (idx == null || png == null) return Optional.empty();
+            ByteBuffer in = ByteBuffer.wrap(idx.readAllBytes());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                System.err.println("⚠ Unsupported sprite atlas: " + basePath);
+                return Optional.empty();
+            }
+            BufferedImage sheet = ImageIO.read(png);
+            if (sheet == null) return Optional.empty();
+
+            int count = in.getInt();
+            Map<String, BufferedImage> regions = new HashMap<>(count * 2);
+            byte[] nameBytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int len = in.get() & 0xFF;
+                in.get(nameBytes, 0, len);
+                String key = new String(nameBytes, 0, len, StandardCharsets.UTF_8);
+                int x = in.getShort() & 0xFFFF, y = in.getShort() & 0xFFFF;
+                int w = in.getShort() & 0xFFFF, h = in.getShort() & 0xFFFF;
+                regions.put(key, sheet.getSubimage(x, y, w, h));
+            }
+            return Optional.of(new SpriteAtlas(regions));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠ Cannot read sprite atlas " + basePath + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // ===== Packer (รันตอน build) =====
+
+    private record Entry(String key, BufferedImage img) {}
+
+    public static void main(String[] args) throws IOException {
+        Path assets = Paths.get(args.length > 0 ? args[0] : "assets");
+        try (DirectoryStream<Path> chars = Files.newDirectoryStream(assets, "boy*")) {
+            for (Path dir : chars) {
+                if (Files.isDirectory(dir)) pack(dir);
+            }
+        }
+    }
+
+    private static void pack(Path charDir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Path preview = charDir.resolve("preview.png");
+        if (Files.exists(preview)) entries.add(new Entry("preview", ImageIO.read(preview.toFile())));
+
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(charDir, Files::isDirectory)) {
+            for (Path folder : folders) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*.png")) {
+                    for (Path f : files) {
+                        Matcher m = FRAME_FILE.matcher(f.getFileName().toString());
+                        if (!m.matches()) continue;
+                        BufferedImage img = ImageIO.read(f.toFile());
+                        if (img != null) entries.add(new Entry(folder.getFileName() + "/" + m.group(1), img));
+                    }
+                }
+            }
+        }
+        if (entries.isEmpty()) return;
+
+        // shelf packing: เรียงสูงไปต่ำ วางเรียงแถวซ้ายไปขวา เต็มแถวขึ้นแถวใหม่
+        entries.sort(Comparator.comparingInt((Entry e) -> e.img().getHeight()).reversed()
+                .thenComparing(Entry::key));
+        int width = MAX_WIDTH;
+        for (Entry e : entries) width = Math.max(width, e.img().getWidth() + PADDING);
+        int[][] pos = new int[entries.size()][2];
+        int x = 0, y = 0, shelf = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            BufferedImage img = entries.get(i).img();
+            if (x + img.getWidth() > width) {
+                x = 0;
+                y += shelf + PADDING;
+                shelf = 0;
+            }
+            pos[i][0] = x;
+            pos[i][1] = y;
+            x += img.getWidth() + PADDING;
+            shelf = Math.max(shelf, img.getHeight());
+        }
+
+        BufferedImage sheet = new BufferedImage(width, y + shelf, BufferedImage.TYPE_INT_ARGB);
+        var g = sheet.createGraphics();
+        ByteArrayOutputStream idxBytes = new ByteArrayOutputStream();
+        DataOutputStream idx = new DataOutputStream(idxBytes);
+        idx.writeInt(MAGIC);
+        idx.writeInt(VERSION);
+        idx.writeInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            g.drawImage(e.img(), pos[i][0], pos[i][1], null);
+            byte[] key = e.key().getBytes(StandardCharsets.UTF_8);
+            idx.writeByte(key.length);
+            idx.write(key);
+            idx.writeShort(pos[i][0]);
+            idx.writeShort(pos[i][1]);
+            idx.writeShort(e.img().getWidth());
+            idx.writeShort(e.img().getHeight());
+        }
+        g.dispose();
+        idx.flush();
+
+        ImageIO.write(sheet, "png", charDir.resolve("atlas.png").toFile());
+        Files.write(charDir.resolve("atlas.idx"), idxBytes.toByteArray());
+        System.out.println("🧩 " + charDir.getFileName() + ": " + entries.size() + " frames -> "
+                + sheet.getWidth() + "x" + sheet.getHeight() + " atlas");
+    }
+}
@@ -0,0 +1,30 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// ท่อส่ง bytes สองทางระหว่าง client กับ server หนึ่งเส้น ทั้งสองฝั่งเห็นแค่ interface นี้
+// ข้ามเครื่องใช้ SocketTransport (TCP) ส่วนเล่นในเครื่องเดียว / ทดสอบ / bench ใช้ LoopbackTransport
+// ที่ต่อกับ server ใน JVM เดียวกันโดยไม่ผ่าน network stack เลย (ดู Server.connectLocal)
+interface Transport extends Closeable {
+    InputStream input() throws IOException;
+
+    OutputStream output() throws IOException;
+
+    // gathering write แบบ SocketChannel.write: เขียนได้ไม่ครบก็ได้ คืนจำนวน bytes ที่เขียนไป
+    long write(ByteBuffer[] srcs, int offset, int length) throws IOException;
+
+    default long write(ByteBuffer src) throws IOException {
+        return write(new ByteBuffer[] { src }, 0, 1);
+    }
+
+    // read ที่รอนานกว่านี้โยน SocketTimeoutException (0 = รอไม่จำกัด)
+    void setReadTimeout(int millis) throws IOException;
+
+    boolean isOpen();
+
+    // ปิดได้จากทุก thread reader ที่ block อยู่ต้องหลุดออกมา (EOF หรือ IOException)
+    @Override
+    void close();
+}
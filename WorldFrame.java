@@ -0,0 +1,118 @@
+import java.awt.Point;
+import java.util.*;
+
+// ภาพโลกหนึ่งช่วงเวลา: ผู้เล่น + ของบนพื้นจาก STATE ล่าสุด + หลุมศพที่สะสมจาก EVT
+// receiver thread decode เป็น frame ใหม่ทั้งก้อนแล้วส่งให้ EDT ผ่าน AtomicReference
+// สร้างแล้วห้ามแก้ EDT จึงไม่มีทางเห็นครึ่งเก่าครึ่งใหม่ และไม่ต้อง lock ทั้งสองฝั่ง
+final class WorldFrame {
+    static final WorldFrame EMPTY = new WorldFrame(List.of(), List.of(), List.of());
+
+    static final class PlayerView {
+        final String name, characterId, actionState, facing;
+        final int x, y, hp;
+        final boolean hasSword, alive, ready;
+
+        PlayerView(String[] d) {
+            name = d[0];
+            x = Integer.parseInt(d[1]);
+            y = Integer.parseInt(d[2]);
+            hp = Integer.parseInt(d[3]);
+            hasSword = Boolean.parseBoolean(d[4]);
+            characterId = d[5];
+            alive = Boolean.parseBoolean(d[6]);
+            ready = Boolean.parseBoolean(d[7]);
+            actionState = d[8];
+            facing = d[9];
+        }
+    }
+
+    static final class ItemView {
+        final int id;
+        final ItemType type;
+        final int x, y;
+
+        ItemView(int id, ItemType type, int x, int y) {
+            this.id = id;
+            this.type = type;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    final List<PlayerView> players;
+    final List<ItemView> items;
+    final List<Point> graves;
+
+    private WorldFrame(List<PlayerView> players, List<ItemView> items, List<Point> graves) {
+        this.players = players;
+        this.items = items;
+        this.graves = graves;
+    }
+
+    // STATE:<ผู้เล่น>:...|ITEMS:<id>,<ชนิด>,<x>,<y>:... หลุมศพไม่อยู่ใน STATE ใช้ของ frame ก่อนหน้า
+    static WorldFrame fromState(String message, List<Point> graves) {
+        String[] stateParts = message.split("\\|");
+        List<PlayerView> players = parsePlayers(stateParts[0]);
+        List<ItemView> items = stateParts.length > 1 && stateParts[1].startsWith("ITEMS")
+                ? parseItems(stateParts[1]) : new ArrayList<>();
+        return new WorldFrame(Collections.unmodifiableList(players), Collections.unmodifiableList(items), graves);
+    }
+
+    // PSTATE<ผู้เล่น>|ITEMS<ของ>|PLAYERS:<ชื่อ>,...|IDS:<id>,... (link ช้า: server ส่งเฉพาะตัวที่สำคัญสุดในงบ)
+    // ตัวที่ไม่มาใน tick นี้แต่ยังอยู่ใน PLAYERS/IDS ใช้ค่าจาก frame ก่อน ตัวที่ไม่อยู่ในนั้นแล้วถูกลบ
+    static WorldFrame fromPartial(String message, WorldFrame previous) {
+        String[] parts = message.split("\\|");
+        if (parts.length < 4) return previous;
+        Map<String, PlayerView> players = new LinkedHashMap<>();
+        for (PlayerView v : previous.players) players.put(v.name, v);
+        for (PlayerView v : parsePlayers(parts[0])) players.put(v.name, v);
+        players.keySet().retainAll(Arrays.asList(parts[2].substring("PLAYERS:".length()).split(",")));
+
+        Map<Integer, ItemView> items = new LinkedHashMap<>();
+        for (ItemView v : previous.items) items.put(v.id, v);
+        for (ItemView v : parseItems(parts[1])) items.put(v.id, v);
+        Set<Integer> live = new HashSet<>();
+        for (String id : parts[3].substring("IDS:".length()).split(",")) {
+            if (!id.isEmpty()) live.add(Integer.parseInt(id));
+        }
+        items.keySet().retainAll(live);
+
+        return new WorldFrame(List.copyOf(players.values()), List.copyOf(items.values()), previous.graves);
+    }
+
+    private static List<PlayerView> parsePlayers(String section) {
+        String[] playerTokens = section.split(":");
+        List<PlayerView> players = new ArrayList<>(playerTokens.length);
+        for (int i = 1; i < playerTokens.length; i++) {
+            String[] pData = playerTokens[i].split(",");
+            if (pData.length < 10) continue; // guard
+            players.add(new PlayerView(pData));
+        }
+        return players;
+    }
+
+    private static List<ItemView> parseItems(String section) {
+        String[] itemTokens = section.split(":");
+        List<ItemView> items = new ArrayList<>(itemTokens.length);
+        for (int i = 1; i < itemTokens.length; i++) {
+            String[] iData = itemTokens[i].split(",");
+            if (iData.length < 4) continue;
+            ItemType type = ItemType.fromCode(iData[1].charAt(0));
+            if (type == null) continue;
+            items.add(new ItemView(Integer.parseInt(iData[0]), type,
+                    Integer.parseInt(iData[2]), Integer.parseInt(iData[3])));
+        }
+        return items;
+    }
+
+    WorldFrame withGraves(List<Point> graves) {
+        return new WorldFrame(players, items, graves);
+    }
+
+    WorldFrame withGrave(Point grave) {
+        List<Point> next = new ArrayList<>(graves.size() + 1);
+        next.addAll(graves);
+        next.add(grave);
+        return withGraves(Collections.unmodifiableList(next));
+    }
+}